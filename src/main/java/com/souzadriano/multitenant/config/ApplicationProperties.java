@@ -10,4 +10,413 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
+    private final Multitenancy multitenancy = new Multitenancy();
+
+    private final Jwt jwt = new Jwt();
+
+    private final Bcrypt bcrypt = new Bcrypt();
+
+    private final Audit audit = new Audit();
+
+    public Multitenancy getMultitenancy() {
+        return multitenancy;
+    }
+
+    public Jwt getJwt() {
+        return jwt;
+    }
+
+    public Bcrypt getBcrypt() {
+        return bcrypt;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    public static class Multitenancy {
+
+        /**
+         * When true, tenant DataSources are only created on the first request for the tenant,
+         * instead of for every row of mt_datasource_config at startup.
+         */
+        private boolean lazyInitialization = false;
+
+        /**
+         * Tenant pools that have not been used for this long are closed, 0 to keep them open.
+         */
+        private long idlePoolTimeoutSeconds = 1800;
+
+        /**
+         * Maximum number of open tenant pools, 0 for no limit.
+         */
+        private int maxPools = 0;
+
+        /**
+         * Maximum number of connections of all tenant pools together, 0 for no limit.
+         */
+        private int maxTotalConnections = 0;
+
+        /**
+         * Number of tenant databases migrated by Liquibase at the same time.
+         */
+        private int migrationParallelism = 4;
+
+        /**
+         * How long a request waits for the migration of its tenant database before failing.
+         */
+        private long migrationWaitTimeoutSeconds = 60;
+
+        public boolean isLazyInitialization() {
+            return lazyInitialization;
+        }
+
+        public void setLazyInitialization(boolean lazyInitialization) {
+            this.lazyInitialization = lazyInitialization;
+        }
+
+        public long getIdlePoolTimeoutSeconds() {
+            return idlePoolTimeoutSeconds;
+        }
+
+        public void setIdlePoolTimeoutSeconds(long idlePoolTimeoutSeconds) {
+            this.idlePoolTimeoutSeconds = idlePoolTimeoutSeconds;
+        }
+
+        public int getMaxPools() {
+            return maxPools;
+        }
+
+        public void setMaxPools(int maxPools) {
+            this.maxPools = maxPools;
+        }
+
+        public int getMaxTotalConnections() {
+            return maxTotalConnections;
+        }
+
+        public void setMaxTotalConnections(int maxTotalConnections) {
+            this.maxTotalConnections = maxTotalConnections;
+        }
+
+        public int getMigrationParallelism() {
+            return migrationParallelism;
+        }
+
+        public void setMigrationParallelism(int migrationParallelism) {
+            this.migrationParallelism = migrationParallelism;
+        }
+
+        public long getMigrationWaitTimeoutSeconds() {
+            return migrationWaitTimeoutSeconds;
+        }
+
+        public void setMigrationWaitTimeoutSeconds(long migrationWaitTimeoutSeconds) {
+            this.migrationWaitTimeoutSeconds = migrationWaitTimeoutSeconds;
+        }
+    }
+
+    /**
+     * Asymmetric JWT signature. When no key store is set, tokens are signed with the HS512 secret of
+     * jhipster.security.authentication.jwt.secret.
+     */
+    public static class Jwt {
+
+        /**
+         * Location of the key store, e.g. "file:/etc/multitenant/jwt.p12" or "classpath:config/jwt.p12".
+         * The certificate of every entry is trusted to verify tokens, the entry id being the "kid" of the token.
+         */
+        private String keyStore;
+
+        private String keyStorePassword;
+
+        private String keyStoreType = "PKCS12";
+
+        /**
+         * Entry of the RSA (RS256) or EC private key used to sign new tokens, EC keys sign with ES256, ES384 or
+         * ES512 according to their curve. Leave it empty on nodes that only verify tokens.
+         */
+        private String keyAlias;
+
+        /**
+         * Password of the private key, defaults to the key store password.
+         */
+        private String keyPassword;
+
+        public String getKeyStore() {
+            return keyStore;
+        }
+
+        public void setKeyStore(String keyStore) {
+            this.keyStore = keyStore;
+        }
+
+        public String getKeyStorePassword() {
+            return keyStorePassword;
+        }
+
+        public void setKeyStorePassword(String keyStorePassword) {
+            this.keyStorePassword = keyStorePassword;
+        }
+
+        public String getKeyStoreType() {
+            return keyStoreType;
+        }
+
+        public void setKeyStoreType(String keyStoreType) {
+            this.keyStoreType = keyStoreType;
+        }
+
+        public String getKeyAlias() {
+            return keyAlias;
+        }
+
+        public void setKeyAlias(String keyAlias) {
+            this.keyAlias = keyAlias;
+        }
+
+        public String getKeyPassword() {
+            return keyPassword;
+        }
+
+        public void setKeyPassword(String keyPassword) {
+            this.keyPassword = keyPassword;
+        }
+    }
+
+    /**
+     * Password hashing and verification, which run on their own bounded thread pool.
+     */
+    public static class Bcrypt {
+
+        /**
+         * BCrypt cost of new hashes, which must be the same on every node. Passwords stored with a lower cost are
+         * rehashed on the next successful login.
+         */
+        private int strength = 10;
+
+        /**
+         * When set, the highest cost whose hash time on this machine stays within this many milliseconds is measured
+         * once the application is ready, and logged as a recommendation for the strength.
+         */
+        private long calibrationTargetMillis = 0;
+
+        /**
+         * Number of passwords hashed or verified at the same time, 0 for the number of processors.
+         */
+        private int threads = 0;
+
+        /**
+         * Number of hash operations waiting for a thread, beyond which requests are rejected with a 503.
+         */
+        private int queueCapacity = 64;
+
+        /**
+         * Value of the Retry-After header of the 503 responses.
+         */
+        private int retryAfterSeconds = 1;
+
+        public int getStrength() {
+            return strength;
+        }
+
+        public void setStrength(int strength) {
+            this.strength = strength;
+        }
+
+        public long getCalibrationTargetMillis() {
+            return calibrationTargetMillis;
+        }
+
+        public void setCalibrationTargetMillis(long calibrationTargetMillis) {
+            this.calibrationTargetMillis = calibrationTargetMillis;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        public void setRetryAfterSeconds(int retryAfterSeconds) {
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+
+    /**
+     * Audit events, which are queued and saved in batches by a background thread, and deleted or archived by a
+     * nightly job once they are older than the retention of their tenant.
+     */
+    public static class Audit {
+
+        public enum OverflowPolicy {
+            /**
+             * The caller waits for room in the queue.
+             */
+            BLOCK,
+            /**
+             * The oldest queued event is dropped.
+             */
+            DROP_OLDEST,
+            /**
+             * One event out of sample-rate replaces the oldest queued event, the others are dropped.
+             */
+            SAMPLE
+        }
+
+        /**
+         * Number of events waiting to be saved, beyond which the overflow policy applies.
+         */
+        private int queueCapacity = 10000;
+
+        /**
+         * Maximum number of events saved in one transaction.
+         */
+        private int batchSize = 100;
+
+        /**
+         * How long an event waits for a full batch before it is saved anyway.
+         */
+        private long flushIntervalMillis = 1000;
+
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+        /**
+         * With the SAMPLE overflow policy, one event out of this many is kept while the queue is full.
+         */
+        private int sampleRate = 10;
+
+        /**
+         * Maximum number of events, newest first, returned by a search of the actuator auditevents endpoint.
+         */
+        private int findMaxResults = 1000;
+
+        /**
+         * Days the events are kept, unless the tenant sets its own retention in mt_datasource_config, 0 to keep
+         * them forever.
+         */
+        private int retentionDays = 0;
+
+        /**
+         * Maximum number of events deleted or archived in one transaction.
+         */
+        private int retentionChunkSize = 1000;
+
+        /**
+         * Number of tenant databases purged at the same time.
+         */
+        private int retentionParallelism = 2;
+
+        /**
+         * When true, expired events are copied to the archive tables before being deleted.
+         */
+        private boolean archive = false;
+
+        /**
+         * Number of rows the audit export reads from the database at a time.
+         */
+        private int exportFetchSize = 500;
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getFlushIntervalMillis() {
+            return flushIntervalMillis;
+        }
+
+        public void setFlushIntervalMillis(long flushIntervalMillis) {
+            this.flushIntervalMillis = flushIntervalMillis;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public int getFindMaxResults() {
+            return findMaxResults;
+        }
+
+        public void setFindMaxResults(int findMaxResults) {
+            this.findMaxResults = findMaxResults;
+        }
+
+        public int getRetentionDays() {
+            return retentionDays;
+        }
+
+        public void setRetentionDays(int retentionDays) {
+            this.retentionDays = retentionDays;
+        }
+
+        public int getRetentionChunkSize() {
+            return retentionChunkSize;
+        }
+
+        public void setRetentionChunkSize(int retentionChunkSize) {
+            this.retentionChunkSize = retentionChunkSize;
+        }
+
+        public int getRetentionParallelism() {
+            return retentionParallelism;
+        }
+
+        public void setRetentionParallelism(int retentionParallelism) {
+            this.retentionParallelism = retentionParallelism;
+        }
+
+        public boolean isArchive() {
+            return archive;
+        }
+
+        public void setArchive(boolean archive) {
+            this.archive = archive;
+        }
+
+        public int getExportFetchSize() {
+            return exportFetchSize;
+        }
+
+        public void setExportFetchSize(int exportFetchSize) {
+            this.exportFetchSize = exportFetchSize;
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package com.souzadriano.multitenant.config;
 
+import com.souzadriano.multitenant.config.multitenant.TenantAwareTaskDecorator;
+
 import io.github.jhipster.async.ExceptionHandlingAsyncTaskExecutor;
 import io.github.jhipster.config.JHipsterProperties;
 
@@ -36,6 +38,7 @@ public class AsyncConfiguration implements AsyncConfigurer {
         executor.setMaxPoolSize(jHipsterProperties.getAsync().getMaxPoolSize());
         executor.setQueueCapacity(jHipsterProperties.getAsync().getQueueCapacity());
         executor.setThreadNamePrefix("multitenant-Executor-");
+        executor.setTaskDecorator(new TenantAwareTaskDecorator());
         return new ExceptionHandlingAsyncTaskExecutor(executor);
     }
 
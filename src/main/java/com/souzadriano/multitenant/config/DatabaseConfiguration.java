@@ -3,6 +3,7 @@ package com.souzadriano.multitenant.config;
 import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.persistence.PersistenceContext;
@@ -36,10 +37,12 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 import com.codahale.metrics.MetricRegistry;
 import com.souzadriano.multitenant.config.multitenant.CurrentTenantIdentifierResolverImpl;
 import com.souzadriano.multitenant.config.multitenant.MultiTenantConnectionProviderImpl;
+import com.souzadriano.multitenant.config.multitenant.TenantCacheRegionFactory;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
 import io.github.jhipster.config.JHipsterConstants;
+import io.github.jhipster.config.JHipsterProperties;
 import io.github.jhipster.config.liquibase.AsyncSpringLiquibase;
 import liquibase.integration.spring.SpringLiquibase;
 
@@ -55,15 +58,31 @@ public class DatabaseConfiguration {
 
     private final Logger log = LoggerFactory.getLogger(DatabaseConfiguration.class);
 
+    /**
+     * Prefix of the Hibernate settings of each profile, the keys of {@link #HIBERNATE_PROPERTIES} are appended to it.
+     */
+    private static final String JPA_PROPERTIES_PREFIX = "spring.jpa.properties.";
+
+    /**
+     * Settings of spring.jpa.properties passed to the multi-tenant EntityManagerFactory, only when they are set.
+     */
+    private static final List<String> HIBERNATE_PROPERTIES = Arrays.asList("hibernate.id.new_generator_mappings",
+        "hibernate.cache.use_second_level_cache", "hibernate.cache.use_query_cache", "hibernate.generate_statistics",
+        "hibernate.jdbc.batch_size", "hibernate.order_inserts", "hibernate.order_updates",
+        "hibernate.jdbc.batch_versioned_data");
+
     private final Environment env;
+
+    private final JHipsterProperties jHipsterProperties;
     
     @Autowired ApplicationContext context;
     
     @Autowired(required = false)
     private MetricRegistry metricRegistry;
 
-    public DatabaseConfiguration(Environment env) {
+    public DatabaseConfiguration(Environment env, JHipsterProperties jHipsterProperties) {
         this.env = env;
+        this.jHipsterProperties = jHipsterProperties;
     }
 
     /**
@@ -147,16 +166,22 @@ public class DatabaseConfiguration {
      */
     @PersistenceContext @Primary @Bean
     public LocalContainerEntityManagerFactoryBean entityManagerFactory(EntityManagerFactoryBuilder builder) {
-    	RelaxedPropertyResolver propertyResolver = new RelaxedPropertyResolver(env, "spring.jpa.properties");
+    	RelaxedPropertyResolver propertyResolver = new RelaxedPropertyResolver(env, JPA_PROPERTIES_PREFIX);
     	
         Map<String, Object> props = new HashMap<>();
         props.put("hibernate.multiTenancy", MultiTenancyStrategy.DATABASE.name());
         props.put("hibernate.multi_tenant_connection_provider", dsProvider);
         props.put("hibernate.tenant_identifier_resolver", tenantResolver);
-        props.put("hibernate.id.new_generator_mappings", propertyResolver.getProperty("hibernate.id.new_generator_mappings"));
-        props.put("hibernate.cache.use_second_level_cache", propertyResolver.getProperty("hibernate.cache.use_second_level_cache"));
-        props.put("hibernate.cache.use_query_cache", propertyResolver.getProperty("hibernate.cache.use_query_cache"));
-        props.put("hibernate.generate_statistics", propertyResolver.getProperty("hibernate.generate_statistics"));
+        for (String key : HIBERNATE_PROPERTIES) {
+            String value = propertyResolver.getProperty(key);
+            if (value != null) {
+                props.put(key, value);
+            }
+        }
+        if (Boolean.parseBoolean(propertyResolver.getProperty("hibernate.cache.use_second_level_cache"))) {
+            props.put("hibernate.cache.region.factory_class",
+                new TenantCacheRegionFactory(jHipsterProperties.getCache().getEhcache(), metricRegistry));
+        }
 
         LocalContainerEntityManagerFactoryBean result = builder.dataSource(dataSource())
                 .persistenceUnit("default")
@@ -1,13 +1,21 @@
 package com.souzadriano.multitenant.config;
 
+import com.souzadriano.multitenant.repository.UserRepository;
 import com.souzadriano.multitenant.security.*;
 import com.souzadriano.multitenant.security.jwt.*;
 
 import io.github.jhipster.security.*;
 
+import com.codahale.metrics.MetricRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
@@ -16,9 +24,7 @@ import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.data.repository.query.SecurityEvaluationContextExtension;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.filter.CorsFilter;
@@ -30,6 +36,8 @@ import javax.annotation.PostConstruct;
 @EnableGlobalMethodSecurity(prePostEnabled = true, securedEnabled = true)
 public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
+    private final Logger log = LoggerFactory.getLogger(SecurityConfiguration.class);
+
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
 
     private final UserDetailsService userDetailsService;
@@ -38,35 +46,73 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     private final CorsFilter corsFilter;
 
+    private final ApplicationProperties applicationProperties;
+
+    private final MetricRegistry metricRegistry;
+
+    private final UserRepository userRepository;
+
+    private final TaskExecutor taskExecutor;
+
+    /**
+     * BCrypt cost of new hashes, configured and the same on every node.
+     */
+    private final int bcryptStrength;
+
     public SecurityConfiguration(AuthenticationManagerBuilder authenticationManagerBuilder, UserDetailsService userDetailsService,
             TokenProvider tokenProvider,
-        CorsFilter corsFilter) {
+        CorsFilter corsFilter, ApplicationProperties applicationProperties, MetricRegistry metricRegistry,
+        UserRepository userRepository, TaskExecutor taskExecutor) {
 
         this.authenticationManagerBuilder = authenticationManagerBuilder;
         this.userDetailsService = userDetailsService;
         this.tokenProvider = tokenProvider;
         this.corsFilter = corsFilter;
+        this.applicationProperties = applicationProperties;
+        this.metricRegistry = metricRegistry;
+        this.userRepository = userRepository;
+        this.taskExecutor = taskExecutor;
+        this.bcryptStrength = applicationProperties.getBcrypt().getStrength();
     }
 
     @PostConstruct
     public void init() {
         try {
             authenticationManagerBuilder
-                .userDetailsService(userDetailsService)
-                    .passwordEncoder(passwordEncoder());
+                .authenticationProvider(new RehashingAuthenticationProvider(userDetailsService, passwordEncoder(),
+                    bcryptStrength, userRepository, taskExecutor));
         } catch (Exception e) {
             throw new BeanInitializationException("Security configuration failed", e);
         }
     }
 
+    /**
+     * Measures the BCrypt cost matching the calibration target in the background, once the application is ready,
+     * so that it does not delay the startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recommendBcryptStrength() {
+        ApplicationProperties.Bcrypt bcrypt = applicationProperties.getBcrypt();
+        if (bcrypt.getCalibrationTargetMillis() <= 0) {
+            return;
+        }
+        taskExecutor.execute(() -> {
+            int recommended = BcryptStrength.calibrate(bcryptStrength, bcrypt.getCalibrationTargetMillis());
+            if (recommended != bcryptStrength) {
+                log.info("Consider setting application.bcrypt.strength to {} on every node, it is {}", recommended,
+                    bcryptStrength);
+            }
+        });
+    }
+
     @Bean
     public Http401UnauthorizedEntryPoint http401UnauthorizedEntryPoint() {
         return new Http401UnauthorizedEntryPoint();
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder() {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(bcryptStrength), applicationProperties.getBcrypt(), metricRegistry);
     }
 
     @Override
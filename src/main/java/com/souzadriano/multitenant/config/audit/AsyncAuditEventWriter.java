@@ -0,0 +1,242 @@
+package com.souzadriano.multitenant.config.audit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.souzadriano.multitenant.config.ApplicationProperties;
+import com.souzadriano.multitenant.config.multitenant.TenantContextHolder;
+import com.souzadriano.multitenant.domain.PersistentAuditEvent;
+import com.souzadriano.multitenant.repository.PersistenceAuditEventRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saves audit events behind the authentication path: {@link #write(PersistentAuditEvent)} only queues the event
+ * with the tenant of the caller, and a background thread saves the queued events in one transaction per tenant,
+ * as soon as a batch is full or the flush interval has elapsed since its first event.
+ * <p>
+ * The queue is bounded, when it is full the configured overflow policy applies. The queue is shared by all
+ * tenants: under DROP_OLDEST and SAMPLE, the event dropped to make room may belong to another tenant than the
+ * caller's, so a busy tenant can push out the events of quiet ones. The queue depth, the dropped events, in total
+ * and per tenant as audit.write-behind.[tenant].dropped, and the flush latency are reported as audit.write-behind
+ * metrics.
+ */
+@Component
+public class AsyncAuditEventWriter {
+
+    private static final String METRIC_PREFIX = "audit.write-behind";
+
+    private static final String DEFAULT_TENANTID = "default";
+
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10000;
+
+    private final Logger log = LoggerFactory.getLogger(AsyncAuditEventWriter.class);
+
+    private final PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Audit properties;
+
+    private final BlockingQueue<TenantEvent> queue;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final AtomicLong overflows = new AtomicLong();
+
+    private final MetricRegistry metricRegistry;
+
+    private final Meter dropped;
+
+    private final Timer flushTimer;
+
+    private final Thread drainer;
+
+    private volatile boolean running = true;
+
+    public AsyncAuditEventWriter(PersistenceAuditEventRepository persistenceAuditEventRepository,
+            PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties,
+            MetricRegistry metricRegistry) {
+        this.persistenceAuditEventRepository = persistenceAuditEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = applicationProperties.getAudit();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+        this.metricRegistry = metricRegistry;
+        this.dropped = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "dropped"));
+        this.flushTimer = metricRegistry.timer(MetricRegistry.name(METRIC_PREFIX, "flush"));
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "queue-depth"), (Gauge<Integer>) queue::size);
+        this.drainer = new Thread(this::drain, "audit-event-writer");
+        this.drainer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        drainer.start();
+    }
+
+    /**
+     * Saves the queued events, and stops the background thread. The thread is left to finish the batch it is
+     * saving, and only interrupted when it does not stop in time.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        drainer.join(SHUTDOWN_TIMEOUT_MILLIS);
+        if (drainer.isAlive()) {
+            log.warn("Audit event writer did not stop within {} ms, interrupting it", SHUTDOWN_TIMEOUT_MILLIS);
+            drainer.interrupt();
+            drainer.join(SHUTDOWN_TIMEOUT_MILLIS);
+        }
+        flush();
+    }
+
+    /**
+     * Queues the event, to be saved in the database of the current tenant.
+     */
+    public void write(PersistentAuditEvent event) {
+        TenantEvent tenantEvent = new TenantEvent(TenantContextHolder.getTenantId(), event);
+        pending.incrementAndGet();
+        if (queue.offer(tenantEvent)) {
+            return;
+        }
+        switch (properties.getOverflowPolicy()) {
+            case BLOCK:
+                try {
+                    queue.put(tenantEvent);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    discard(tenantEvent.tenantId, 1);
+                }
+                break;
+            case SAMPLE:
+                if (overflows.getAndIncrement() % Math.max(1, properties.getSampleRate()) != 0) {
+                    discard(tenantEvent.tenantId, 1);
+                    break;
+                }
+                replaceOldest(tenantEvent);
+                break;
+            default:
+                replaceOldest(tenantEvent);
+        }
+    }
+
+    /**
+     * Saves the queued events on the calling thread, and waits for the batch being saved by the background thread.
+     */
+    public void flush() throws InterruptedException {
+        List<TenantEvent> batch = new ArrayList<>();
+        while (queue.drainTo(batch, Math.max(1, properties.getBatchSize())) > 0) {
+            save(batch);
+            batch.clear();
+        }
+        synchronized (pending) {
+            long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+            while (pending.get() > 0 && System.currentTimeMillis() < deadline) {
+                pending.wait(deadline - System.currentTimeMillis());
+            }
+        }
+    }
+
+    /**
+     * Makes room by dropping the oldest queued event, whichever tenant it belongs to.
+     */
+    private void replaceOldest(TenantEvent tenantEvent) {
+        while (!queue.offer(tenantEvent)) {
+            TenantEvent oldest = queue.poll();
+            if (oldest != null) {
+                discard(oldest.tenantId, 1);
+            }
+        }
+    }
+
+    private void drain() {
+        List<TenantEvent> batch = new ArrayList<>(properties.getBatchSize());
+        while (running) {
+            try {
+                TenantEvent first = queue.poll(properties.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMillis());
+                while (batch.size() < properties.getBatchSize()) {
+                    TenantEvent next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                save(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Saves the events of the batch in one transaction per tenant.
+     */
+    private void save(List<TenantEvent> batch) {
+        Map<String, List<PersistentAuditEvent>> eventsByTenant = new LinkedHashMap<>();
+        for (TenantEvent tenantEvent : batch) {
+            eventsByTenant.computeIfAbsent(tenantEvent.tenantId, tenantId -> new ArrayList<>()).add(tenantEvent.event);
+        }
+        eventsByTenant.forEach((tenantId, events) -> {
+            try (Timer.Context ignored = flushTimer.time()) {
+                TenantContextHolder.runAs(tenantId, () -> transactionTemplate.execute(status ->
+                    persistenceAuditEventRepository.save(events)));
+                done(events.size());
+            } catch (RuntimeException e) {
+                log.warn("Could not save {} audit events of tenant {}: {}", events.size(), tenantId, e.getMessage());
+                discard(tenantId, events.size());
+            }
+        });
+    }
+
+    private void discard(String tenantId, int count) {
+        dropped.mark(count);
+        metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, Objects.toString(tenantId, DEFAULT_TENANTID), "dropped"))
+            .mark(count);
+        done(count);
+    }
+
+    private void done(int count) {
+        if (pending.addAndGet(-count) <= 0) {
+            synchronized (pending) {
+                pending.notifyAll();
+            }
+        }
+    }
+
+    private static class TenantEvent {
+
+        private final String tenantId;
+
+        private final PersistentAuditEvent event;
+
+        TenantEvent(String tenantId, PersistentAuditEvent event) {
+            this.tenantId = tenantId;
+            this.event = event;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.souzadriano.multitenant.config.multitenant;
+
+import com.souzadriano.multitenant.domain.DataSourceConfig;
+
+/**
+ * Published when a DataSourceConfig is created, updated or deleted, so that the tenant pools can follow
+ * without a restart.
+ */
+public class DataSourceConfigChangedEvent {
+
+	public enum Type {
+		CREATED, UPDATED, DELETED
+	}
+
+	private final Type type;
+
+	private final DataSourceConfig dataSourceConfig;
+
+	private final String previousName;
+
+	private DataSourceConfigChangedEvent(Type type, DataSourceConfig dataSourceConfig, String previousName) {
+		this.type = type;
+		this.dataSourceConfig = dataSourceConfig;
+		this.previousName = previousName;
+	}
+
+	public static DataSourceConfigChangedEvent created(DataSourceConfig dataSourceConfig) {
+		return new DataSourceConfigChangedEvent(Type.CREATED, dataSourceConfig, null);
+	}
+
+	public static DataSourceConfigChangedEvent updated(DataSourceConfig dataSourceConfig, String previousName) {
+		return new DataSourceConfigChangedEvent(Type.UPDATED, dataSourceConfig, previousName);
+	}
+
+	public static DataSourceConfigChangedEvent deleted(DataSourceConfig dataSourceConfig) {
+		return new DataSourceConfigChangedEvent(Type.DELETED, dataSourceConfig, dataSourceConfig.getName());
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public DataSourceConfig getDataSourceConfig() {
+		return dataSourceConfig;
+	}
+
+	/**
+	 * @return the tenant name before the change, which differs from the current one when a tenant is renamed
+	 */
+	public String getPreviousName() {
+		return previousName;
+	}
+
+	@Override
+	public String toString() {
+		return "DataSourceConfigChangedEvent{" +
+			"type=" + type +
+			", name='" + dataSourceConfig.getName() + "'" +
+			", previousName='" + previousName + "'" +
+			"}";
+	}
+}
@@ -1,87 +1,593 @@
 package com.souzadriano.multitenant.config.multitenant;
 
+import java.lang.management.ManagementFactory;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.autoconfigure.liquibase.LiquibaseProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
-import org.springframework.core.env.Environment;
-import org.springframework.core.io.ResourceLoader;
 import org.springframework.core.task.TaskExecutor;
-import org.springframework.jdbc.datasource.lookup.MapDataSourceLookup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.DataSourceLookup;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.datasource.lookup.DataSourceLookupFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.souzadriano.multitenant.config.ApplicationProperties;
 
 import com.souzadriano.multitenant.domain.DataSourceConfig;
 import com.souzadriano.multitenant.repository.DataSourceConfigRepository;
 import com.zaxxer.hikari.HikariDataSource;
-
-import io.github.jhipster.config.JHipsterConstants;
-import io.github.jhipster.config.liquibase.AsyncSpringLiquibase;
-import liquibase.exception.LiquibaseException;
-import liquibase.integration.spring.SpringLiquibase;
+import com.zaxxer.hikari.HikariPoolMXBean;
 
 @Component(value = "dataSourceLookup")
-public class MultiTenantDataSourceLookup extends MapDataSourceLookup {
+public class MultiTenantDataSourceLookup implements DataSourceLookup {
 
 	private static final String DEFAULT_TENANTID = "default";
+
+	private static final String SELECT_DATASOURCE_CONFIG = "SELECT id, name, url, username, jhi_password, initialize, "
+			+ "maximum_pool_size, minimum_idle, connection_timeout, max_lifetime, data_source_properties "
+			+ "FROM mt_datasource_config WHERE name = ?";
+
+	private static final long EVICTION_INTERVAL_MILLIS = 60000;
+
+	private static final long DRAIN_TIMEOUT_MILLIS = 30000;
+
+	private static final long DRAIN_CHECK_INTERVAL_MILLIS = 500;
+
+	/**
+	 * A pool handed out this recently is not evicted, so that the caller can still borrow its connection.
+	 */
+	private static final long HAND_OUT_GRACE_MILLIS = 5000;
+
 	private final Logger logger = LoggerFactory.getLogger(MultiTenantDataSourceLookup.class);
 
-	@Autowired
-	private ApplicationContext context;
+	/**
+	 * Tenant DataSources, created once per tenant. Each entry holds a future so that concurrent
+	 * first requests for the same tenant wait for a single pool to be built.
+	 */
+	private final ConcurrentMap<String, TenantDataSource> dataSources = new ConcurrentHashMap<>();
+
+	/**
+	 * Tenants whose database has already been migrated by this instance, so that a pool
+	 * re-created after eviction does not run Liquibase again.
+	 */
+	private final Set<String> migratedTenants = ConcurrentHashMap.newKeySet();
+
+	private final AtomicInteger poolSequence = new AtomicInteger();
+
+	/**
+	 * Pools removed from {@link #dataSources} but not closed yet, and their connections. They still count in
+	 * the connection budget. Guarded by this.
+	 */
+	private int drainingPools;
+
+	private int drainingConnections;
+
+	/**
+	 * Pools being drained, closed right away on shutdown.
+	 */
+	private final Set<TenantDataSource> drainingDataSources = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Closes replaced and removed pools once their borrowed connections have been returned.
+	 */
+	private final ScheduledExecutorService drainExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "tenant-datasource-drain");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final HikariDataSource defaultDataSource;
+
+	private final JdbcTemplate defaultJdbcTemplate;
 
 	@Autowired
-	private TaskExecutor taskExecutor;
+	private ApplicationContext context;
 
 	@Autowired
-	private LiquibaseProperties liquibaseProperties;
+	private ApplicationProperties applicationProperties;
 
 	@Autowired
-	private Environment environment;
+	private TaskExecutor taskExecutor;
 
 	@Autowired
-	private ResourceLoader resourceLoader;
+	private TenantMigrationScheduler migrationScheduler;
 
 	@Autowired
 	public MultiTenantDataSourceLookup(HikariDataSource defaultDataSource, ApplicationContext context) {
 		super();
+		this.defaultDataSource = defaultDataSource;
+		this.defaultJdbcTemplate = new JdbcTemplate(defaultDataSource);
 		addDataSource(DEFAULT_TENANTID, defaultDataSource);
 	}
 
 	@EventListener
-	public void handleContextRefresh(ContextRefreshedEvent event) throws LiquibaseException {
+	public void handleContextRefresh(ContextRefreshedEvent event) {
+		if (applicationProperties.getMultitenancy().isLazyInitialization()) {
+			logger.info("Tenant DataSources will be created on first use");
+			return;
+		}
 		DataSourceConfigRepository configRepository = context.getBean(DataSourceConfigRepository.class);
 		addTenantDataSources(configRepository.findAll());
 	}
 
-	void addTenantDataSources(Collection<DataSourceConfig> dataSources) throws LiquibaseException {
+	void addTenantDataSources(Collection<DataSourceConfig> dataSources) {
 		for (DataSourceConfig dataSource : dataSources) {
 			// Add new datasource with own configuration per tenant
-			HikariDataSource customDataSource = createTenantDataSource(dataSource);
-			addDataSource(dataSource.getName(), customDataSource);
-			liquibaseUpdate(customDataSource);
-			logger.info("Configured tenant: " + dataSource.getName());
+			addDataSource(dataSource.getName(), createAndMigrateTenantDataSource(dataSource));
+		}
+	}
+
+	/**
+	 * Returns the DataSource of the tenant, creating it on first use from its row in mt_datasource_config.
+	 * The DataSource is only returned once the tenant database has been migrated.
+	 */
+	@Override
+	public DataSource getDataSource(String tenantId) throws DataSourceLookupFailureException {
+		Assert.notNull(tenantId, "Tenant identifier must not be null");
+		TenantDataSource tenantDataSource = provisionDataSource(tenantId);
+		DataSource dataSource = awaitDataSource(tenantId, tenantDataSource);
+		// Marked as used under the eviction lock, and provisioned again if it was evicted meanwhile
+		while (!handOut(tenantId, tenantDataSource)) {
+			tenantDataSource = provisionDataSource(tenantId);
+			dataSource = awaitDataSource(tenantId, tenantDataSource);
+		}
+		if (!DEFAULT_TENANTID.equals(tenantId)) {
+			awaitMigration(tenantId, tenantDataSource);
+		}
+		return dataSource;
+	}
+
+	private synchronized boolean handOut(String tenantId, TenantDataSource tenantDataSource) {
+		if (dataSources.get(tenantId) != tenantDataSource) {
+			return false;
+		}
+		tenantDataSource.lastAccess = System.currentTimeMillis();
+		return true;
+	}
+
+	private DataSource awaitDataSource(String tenantId, TenantDataSource tenantDataSource) {
+		DataSource dataSource;
+		try {
+			dataSource = tenantDataSource.future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataSourceLookupFailureException("Interrupted while creating DataSource for tenant [" + tenantId + "]", e);
+		} catch (ExecutionException e) {
+			// Forget the failed attempt so that the next request tries again
+			dataSources.remove(tenantId, tenantDataSource);
+			if (e.getCause() instanceof DataSourceLookupFailureException) {
+				throw (DataSourceLookupFailureException) e.getCause();
+			}
+			throw new DataSourceLookupFailureException("Could not create DataSource for tenant [" + tenantId + "]", e.getCause());
+		}
+		return dataSource;
+	}
+
+	/**
+	 * Creates the pool of the tenant unless it exists, without waiting for the migration of its database.
+	 * A failure is kept in the returned entry and reported by the next {@link #getDataSource(String)}.
+	 */
+	private TenantDataSource provisionDataSource(String tenantId) {
+		TenantDataSource tenantDataSource = dataSources.get(tenantId);
+		if (tenantDataSource == null) {
+			TenantDataSource created = new TenantDataSource(() -> materializeDataSource(tenantId));
+			tenantDataSource = dataSources.putIfAbsent(tenantId, created);
+			if (tenantDataSource == null) {
+				tenantDataSource = created;
+				created.future.run();
+			}
+		}
+		return tenantDataSource;
+	}
+
+	private void awaitMigration(String tenantId, TenantDataSource tenantDataSource) {
+		long timeout = applicationProperties.getMultitenancy().getMigrationWaitTimeoutSeconds();
+		try {
+			migrationScheduler.awaitMigration(tenantId, timeout, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataSourceLookupFailureException("Interrupted while migrating tenant [" + tenantId + "]", e);
+		} catch (TimeoutException e) {
+			throw new DataSourceLookupFailureException("Tenant [" + tenantId + "] is still being migrated", e);
+		} catch (ExecutionException e) {
+			// Drop the pool so that the next request creates a new one and tries the migration again
+			if (dataSources.remove(tenantId, tenantDataSource)) {
+				migratedTenants.remove(tenantId);
+				drainDataSource(tenantId, tenantDataSource);
+			}
+			throw new DataSourceLookupFailureException("Could not migrate tenant [" + tenantId + "]", e.getCause());
+		}
+	}
+
+	/**
+	 * Keeps the tenant pools in line with mt_datasource_config: new tenants are provisioned and migrated in
+	 * the background, updated tenants get a new pool that replaces the old one, and deleted tenants have
+	 * their pool closed. Replaced and removed pools are drained before being closed, and the second-level
+	 * cache is evicted so that the entries read from the previous database are no longer served.
+	 * <p>
+	 * The events are local Spring events, only the instance that changed the configuration sees them. The
+	 * other instances keep serving a stale or deleted tenant from their pool until it is evicted as idle.
+	 */
+	@EventListener
+	public void handleDataSourceConfigChange(DataSourceConfigChangedEvent event) {
+		logger.debug("DataSourceConfig changed: {}", event);
+		DataSourceConfig dataSourceConfig = event.getDataSourceConfig();
+		if (DEFAULT_TENANTID.equals(dataSourceConfig.getName()) || DEFAULT_TENANTID.equals(event.getPreviousName())) {
+			logger.warn("Ignoring change of the DataSourceConfig named {}, the default DataSource is not managed here",
+					DEFAULT_TENANTID);
+			return;
+		}
+		switch (event.getType()) {
+		case CREATED:
+			taskExecutor.execute(() -> provisionDataSource(dataSourceConfig.getName()));
+			break;
+		case UPDATED:
+			if (event.getPreviousName() != null && !event.getPreviousName().equals(dataSourceConfig.getName())) {
+				removeDataSource(event.getPreviousName());
+			}
+			taskExecutor.execute(() -> replaceDataSource(dataSourceConfig));
+			break;
+		case DELETED:
+			removeDataSource(dataSourceConfig.getName());
+			break;
+		}
+	}
+
+	private void replaceDataSource(DataSourceConfig dataSourceConfig) {
+		String tenantId = dataSourceConfig.getName();
+		// The url may point to another database now, which has to be migrated
+		migratedTenants.remove(tenantId);
+		migrationScheduler.invalidate(tenantId);
+		// The old pool is drained first, and counts in the connection budget until it is closed, the new settings
+		// are read when the tenant is next used
+		TenantDataSource tenantDataSource = dataSources.remove(tenantId);
+		if (tenantDataSource != null) {
+			drainDataSource(tenantId, tenantDataSource);
+		}
+		evictSecondLevelCache(tenantId);
+	}
+
+	private void removeDataSource(String tenantId) {
+		migratedTenants.remove(tenantId);
+		migrationScheduler.forget(tenantId);
+		TenantDataSource tenantDataSource = dataSources.remove(tenantId);
+		if (tenantDataSource != null) {
+			drainDataSource(tenantId, tenantDataSource);
+		}
+		evictSecondLevelCache(tenantId);
+	}
+
+	/**
+	 * The cache regions are shared by all tenants and Hibernate cannot evict the entries of a single tenant,
+	 * all of them are evicted. Done once the old pool is no longer handed out, so that it cannot refill them.
+	 */
+	private void evictSecondLevelCache(String tenantId) {
+		EntityManagerFactory entityManagerFactory = context.getBean(EntityManagerFactory.class);
+		entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+		logger.debug("Evicted the second-level cache after the change of tenant: {}", tenantId);
+	}
+
+	private void addDataSource(String tenantId, HikariDataSource dataSource) {
+		TenantDataSource tenantDataSource = new TenantDataSource(() -> dataSource);
+		tenantDataSource.future.run();
+		tenantDataSource.hikariDataSource = dataSource;
+		tenantDataSource.maximumPoolSize = dataSource.getMaximumPoolSize();
+		// Swapped in one step, requests either get the old pool or the new one
+		TenantDataSource previous = dataSources.put(tenantId, tenantDataSource);
+		if (previous != null) {
+			drainDataSource(tenantId, previous);
+		}
+	}
+
+	/**
+	 * Closes a pool that is no longer handed out, once its borrowed connections have been returned or
+	 * the drain timeout has elapsed. Idle connections are closed right away.
+	 */
+	private void drainDataSource(String tenantId, TenantDataSource tenantDataSource) {
+		long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+		int connections = tenantDataSource.maximumPoolSize;
+		synchronized (this) {
+			drainingPools++;
+			drainingConnections += connections;
+		}
+		drainingDataSources.add(tenantDataSource);
+		drainExecutor.execute(new Runnable() {
+
+			private boolean softEvicted;
+
+			@Override
+			public void run() {
+				HikariDataSource dataSource = completedDataSource(tenantDataSource);
+				if (dataSource == null) {
+					if (System.currentTimeMillis() < deadline) {
+						// Still being created, it has to be closed once ready
+						drainExecutor.schedule(this, DRAIN_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+						return;
+					}
+					// Closed by the thread creating it, once it is done
+					tenantDataSource.closeWhenCreated();
+					drained(tenantDataSource, connections);
+					return;
+				}
+				HikariPoolMXBean pool = getPoolMXBean(dataSource);
+				if (pool != null && !softEvicted) {
+					pool.softEvictConnections();
+					softEvicted = true;
+				}
+				if (pool != null && pool.getActiveConnections() > 0 && System.currentTimeMillis() < deadline) {
+					drainExecutor.schedule(this, DRAIN_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+					return;
+				}
+				dataSource.close();
+				drained(tenantDataSource, connections);
+				logger.info("Closed DataSource of tenant: " + tenantId);
+			}
+		});
+	}
+
+	/**
+	 * Releases the connections of a drained pool from the budget, and wakes up the reservations waiting for them.
+	 */
+	private synchronized void drained(TenantDataSource tenantDataSource, int connections) {
+		drainingDataSources.remove(tenantDataSource);
+		drainingPools--;
+		drainingConnections -= connections;
+		notifyAll();
+	}
+
+	private HikariDataSource completedDataSource(TenantDataSource tenantDataSource) {
+		if (!tenantDataSource.future.isDone()) {
+			return null;
+		}
+		try {
+			DataSource dataSource = tenantDataSource.future.get();
+			return dataSource instanceof HikariDataSource ? (HikariDataSource) dataSource : null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			// Never created, nothing to close
+			return null;
+		}
+	}
+
+	/**
+	 * Closes the pools of tenants that have not been used for longer than the configured idle timeout.
+	 */
+	@Scheduled(fixedDelay = EVICTION_INTERVAL_MILLIS)
+	public void evictIdleDataSources() {
+		long idleTimeout = TimeUnit.SECONDS.toMillis(applicationProperties.getMultitenancy().getIdlePoolTimeoutSeconds());
+		if (idleTimeout <= 0) {
+			return;
+		}
+		long idleSince = System.currentTimeMillis() - idleTimeout;
+		dataSources.forEach((tenantId, tenantDataSource) -> {
+			if (tenantDataSource.lastAccess < idleSince && isEvictable(tenantId, tenantDataSource)) {
+				logger.debug("Closing idle DataSource of tenant: {}", tenantId);
+				evictDataSource(tenantId, tenantDataSource);
+			}
+		});
+	}
+
+	/**
+	 * Closes the tenant pools, including the ones still being drained or created, without waiting for their
+	 * borrowed connections.
+	 */
+	@PreDestroy
+	public void closeTenantDataSources() {
+		drainExecutor.shutdownNow();
+		drainingDataSources.forEach(TenantDataSource::closeWhenCreated);
+		drainingDataSources.clear();
+		dataSources.forEach((tenantId, tenantDataSource) -> {
+			if (!DEFAULT_TENANTID.equals(tenantId) && dataSources.remove(tenantId, tenantDataSource)) {
+				tenantDataSource.closeWhenCreated();
+				logger.info("Closed DataSource of tenant: " + tenantId);
+			}
+		});
+	}
+
+	/**
+	 * Reserves room for a new tenant pool in the connection budget, evicting the least recently used idle
+	 * pools when the maximum number of pools or of connections would be exceeded. Pools being drained count
+	 * until they are closed, when only they stand in the way the reservation waits for them, up to the drain
+	 * timeout.
+	 */
+	private synchronized void reserveConnections(String tenantId, HikariDataSource dataSource) {
+		ApplicationProperties.Multitenancy multitenancy = applicationProperties.getMultitenancy();
+		int maxPools = multitenancy.getMaxPools();
+		int maxTotalConnections = multitenancy.getMaxTotalConnections();
+		int requested = dataSource.getMaximumPoolSize();
+		if (maxTotalConnections > 0 && requested > maxTotalConnections) {
+			throw new DataSourceLookupFailureException("DataSource of tenant [" + tenantId + "] needs " + requested
+					+ " connections, more than the total of " + maxTotalConnections + " allowed");
+		}
+		long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+		while (true) {
+			List<Map.Entry<String, TenantDataSource>> candidates = dataSources.entrySet().stream()
+				.filter(entry -> !entry.getKey().equals(tenantId) && !DEFAULT_TENANTID.equals(entry.getKey()))
+				.filter(entry -> entry.getValue().maximumPoolSize > 0)
+				.sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+				.collect(Collectors.toList());
+			int pools = candidates.size() + drainingPools;
+			int connections = candidates.stream().mapToInt(entry -> entry.getValue().maximumPoolSize).sum() + drainingConnections;
+			if ((maxPools <= 0 || pools < maxPools) && (maxTotalConnections <= 0 || connections + requested <= maxTotalConnections)) {
+				break;
+			}
+			Map.Entry<String, TenantDataSource> leastRecentlyUsed = candidates.stream()
+				.filter(entry -> isEvictable(entry.getKey(), entry.getValue()))
+				.findFirst()
+				.orElse(null);
+			if (leastRecentlyUsed != null) {
+				logger.debug("Closing least recently used DataSource of tenant: {}", leastRecentlyUsed.getKey());
+				evictDataSource(leastRecentlyUsed.getKey(), leastRecentlyUsed.getValue());
+				continue;
+			}
+			long remaining = deadline - System.currentTimeMillis();
+			if (drainingPools == 0 || remaining <= 0) {
+				throw new DataSourceLookupFailureException("No connections left to create the DataSource of tenant ["
+						+ tenantId + "]: " + pools + " pools with " + connections + " connections are in use");
+			}
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DataSourceLookupFailureException("Interrupted while waiting for connections for tenant ["
+						+ tenantId + "]", e);
+			}
+		}
+		TenantDataSource tenantDataSource = dataSources.get(tenantId);
+		if (tenantDataSource != null && !tenantDataSource.future.isDone()) {
+			// The entry being provisioned, a replaced pool keeps its own bookkeeping until it is drained
+			tenantDataSource.hikariDataSource = dataSource;
+			tenantDataSource.maximumPoolSize = requested;
+		}
+	}
+
+	private boolean isEvictable(String tenantId, TenantDataSource tenantDataSource) {
+		return tenantDataSource.lastAccess <= System.currentTimeMillis() - HAND_OUT_GRACE_MILLIS
+				&& isUnused(tenantId, tenantDataSource);
+	}
+
+	private boolean isUnused(String tenantId, TenantDataSource tenantDataSource) {
+		if (DEFAULT_TENANTID.equals(tenantId) || !tenantDataSource.future.isDone() || tenantDataSource.hikariDataSource == null) {
+			return false;
+		}
+		HikariPoolMXBean pool = getPoolMXBean(tenantDataSource.hikariDataSource);
+		return pool == null || pool.getActiveConnections() == 0;
+	}
+
+	/**
+	 * @return whether the pool of the tenant is open, without creating it
+	 */
+	public boolean isDataSourceOpen(String tenantId) {
+		TenantDataSource tenantDataSource = dataSources.get(tenantId);
+		return tenantDataSource != null && completedDataSource(tenantDataSource) != null;
+	}
+
+	/**
+	 * Closes the pool of the tenant when it has not been handed out since the given time and no connection is
+	 * borrowed, for background jobs that opened a pool only for themselves.
+	 *
+	 * @param handedOutAt the time the job got the pool
+	 */
+	public synchronized void releaseDataSource(String tenantId, long handedOutAt) {
+		TenantDataSource tenantDataSource = dataSources.get(tenantId);
+		if (tenantDataSource != null && tenantDataSource.lastAccess <= handedOutAt && isUnused(tenantId, tenantDataSource)) {
+			logger.debug("Releasing DataSource of tenant: {}", tenantId);
+			evictDataSource(tenantId, tenantDataSource);
+		}
+	}
+
+	/**
+	 * HikariCP 2.6 only exposes the pool statistics through JMX.
+	 *
+	 * @return the pool MXBean, or null if the pool has not been started yet
+	 */
+	private HikariPoolMXBean getPoolMXBean(HikariDataSource dataSource) {
+		try {
+			ObjectName poolName = new ObjectName("com.zaxxer.hikari:type=Pool (" + dataSource.getPoolName() + ")");
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			if (!mBeanServer.isRegistered(poolName)) {
+				return null;
+			}
+			return JMX.newMXBeanProxy(mBeanServer, poolName, HikariPoolMXBean.class);
+		} catch (MalformedObjectNameException e) {
+			logger.warn("Invalid pool name: " + dataSource.getPoolName(), e);
+			return null;
+		}
+	}
+
+	private synchronized void evictDataSource(String tenantId, TenantDataSource tenantDataSource) {
+		// Removed first, so that new requests build a fresh pool instead of using the closed one
+		if (dataSources.remove(tenantId, tenantDataSource)) {
+			closeDataSource(tenantId, tenantDataSource);
+		}
+	}
+
+	private void closeDataSource(String tenantId, TenantDataSource tenantDataSource) {
+		if (tenantDataSource.hikariDataSource != null) {
+			tenantDataSource.hikariDataSource.close();
+			logger.info("Closed DataSource of tenant: " + tenantId);
 		}
 	}
 
-	private void liquibaseUpdate(HikariDataSource customDataSource) throws LiquibaseException {
-		SpringLiquibase liquibase = new AsyncSpringLiquibase(taskExecutor, environment);
-		liquibase.setResourceLoader(resourceLoader);
-		liquibase.setDataSource(customDataSource);
-		liquibase.setChangeLog("classpath:config/liquibase/master.xml");
-		liquibase.setContexts(liquibaseProperties.getContexts());
-		liquibase.setDefaultSchema(liquibaseProperties.getDefaultSchema());
-		liquibase.setDropFirst(liquibaseProperties.isDropFirst());
-		if (environment.acceptsProfiles(JHipsterConstants.SPRING_PROFILE_NO_LIQUIBASE)) {
-			liquibase.setShouldRun(false);
-		} else {
-			liquibase.setShouldRun(liquibaseProperties.isEnabled());
-			logger.debug("Configuring Liquibase");
+	private DataSource materializeDataSource(String tenantId) {
+		DataSourceConfig dataSourceConfig = findDataSourceConfig(tenantId);
+		if (dataSourceConfig == null) {
+			throw new DataSourceLookupFailureException("No DataSource configured for tenant [" + tenantId + "]");
 		}
-		liquibase.afterPropertiesSet();
+		return createAndMigrateTenantDataSource(dataSourceConfig);
+	}
+
+	/**
+	 * Reads the configuration straight from the default database, as this is called while Hibernate is
+	 * acquiring a tenant connection and must not go through the multi-tenant EntityManager.
+	 */
+	private DataSourceConfig findDataSourceConfig(String tenantId) {
+		List<DataSourceConfig> configs = defaultJdbcTemplate.query(SELECT_DATASOURCE_CONFIG, (rs, rowNum) -> {
+			DataSourceConfig dataSourceConfig = new DataSourceConfig()
+				.name(rs.getString("name"))
+				.url(rs.getString("url"))
+				.username(rs.getString("username"))
+				.password(rs.getString("jhi_password"))
+				.initialize(rs.getBoolean("initialize"))
+				.maximumPoolSize((Integer) JdbcUtils.getResultSetValue(rs, rs.findColumn("maximum_pool_size"), Integer.class))
+				.minimumIdle((Integer) JdbcUtils.getResultSetValue(rs, rs.findColumn("minimum_idle"), Integer.class))
+				.connectionTimeout((Long) JdbcUtils.getResultSetValue(rs, rs.findColumn("connection_timeout"), Long.class))
+				.maxLifetime((Long) JdbcUtils.getResultSetValue(rs, rs.findColumn("max_lifetime"), Long.class))
+				.dataSourceProperties(rs.getString("data_source_properties"));
+			dataSourceConfig.setId(rs.getLong("id"));
+			return dataSourceConfig;
+		}, tenantId);
+		return configs.isEmpty() ? null : configs.get(0);
+	}
+
+	/**
+	 * Creates the pool of the tenant and schedules the migration of its database, which
+	 * {@link #getDataSource(String)} waits for.
+	 */
+	private HikariDataSource createAndMigrateTenantDataSource(DataSourceConfig dataSource) {
+		HikariDataSource customDataSource = createTenantDataSource(dataSource);
+		reserveConnections(dataSource.getName(), customDataSource);
+		if (migrationScheduler.isEnabled() && migratedTenants.add(dataSource.getName())) {
+			migrationScheduler.migrate(dataSource.getName(), customDataSource);
+		}
+		logger.info("Configured tenant: " + dataSource.getName());
+		return customDataSource;
 	}
 
 	private HikariDataSource createTenantDataSource(DataSourceConfig dataSource) {
@@ -91,34 +597,96 @@ public class MultiTenantDataSourceLookup extends MapDataSourceLookup {
 		customDataSource.setJdbcUrl(dataSource.getUrl());
 		customDataSource.setUsername(dataSource.getUsername());
 		customDataSource.setPassword(dataSource.getPassword());
-		// These has default values in defaultDataSource
-		// HikariDataSource defaultDataSource = (HikariDataSource)
-		// getDataSource(DEFAULT_TENANTID);
-		// customDataSource.setDriverClassName(defaultDataSource.getDriverClassName());
-
-		// customDataSource.setIdleConnectionTestPeriodInMinutes(Long.valueOf(tenantProps.getProperty(
-		// "database.idleConnectionTestPeriod",String.valueOf(defaultDataSource.getIdleConnectionTestPeriodInMinutes()))));
-		// customDataSource.setIdleMaxAgeInMinutes(Long.valueOf(tenantProps.getProperty(
-		// "database.idleMaxAge",
-		// String.valueOf(defaultDataSource.getIdleMaxAgeInMinutes()))));
-		// customDataSource.setMaxConnectionsPerPartition(Integer.valueOf(tenantProps.getProperty(
-		// "database.maxConnectionsPerPartition",
-		// String.valueOf(defaultDataSource.getMaxConnectionsPerPartition()))));
-		// customDataSource.setMinConnectionsPerPartition(Integer.valueOf(tenantProps.getProperty(
-		// "database.minConnectionsPerPartition",
-		// String.valueOf(defaultDataSource.getMinConnectionsPerPartition()))));
-		// customDataSource.setPartitionCount(Integer.valueOf(tenantProps.getProperty(
-		// "database.partitionCount",
-		// String.valueOf(defaultDataSource.getPartitionCount()))));
-		// customDataSource.setAcquireIncrement(Integer.valueOf(tenantProps.getProperty(
-		// "database.acquireIncrement",
-		// String.valueOf(defaultDataSource.getAcquireIncrement()))));
-		// customDataSource.setStatementsCacheSize(Integer.valueOf(tenantProps.getProperty(
-		// "database.statementsCacheSize",String.valueOf(defaultDataSource.getStatementCacheSize()))));
-		// customDataSource.setReleaseHelperThreads(Integer.valueOf(tenantProps.getProperty(
-		// "database.releaseHelperThreads",
-		// String.valueOf(defaultDataSource.getReleaseHelperThreads()))));customDataSource.setDriverClass(tenantProps.getProperty("database.driverClassName"));
+		// Registered in JMX so that the eviction can check for active connections
+		customDataSource.setPoolName("tenant-" + dataSource.getName().replaceAll("[^A-Za-z0-9_.-]", "_") + "-"
+				+ poolSequence.incrementAndGet());
+		customDataSource.setRegisterMbeans(true);
+
+		// Pool sizing has default values in defaultDataSource, tenants only override what they need
+		customDataSource.setMaximumPoolSize(dataSource.getMaximumPoolSize() != null ? dataSource.getMaximumPoolSize()
+				: defaultDataSource.getMaximumPoolSize());
+		if (dataSource.getMinimumIdle() != null) {
+			customDataSource.setMinimumIdle(dataSource.getMinimumIdle());
+		} else if (defaultDataSource.getMinimumIdle() >= 0) {
+			customDataSource.setMinimumIdle(defaultDataSource.getMinimumIdle());
+		}
+		customDataSource.setConnectionTimeout(dataSource.getConnectionTimeout() != null ? dataSource.getConnectionTimeout()
+				: defaultDataSource.getConnectionTimeout());
+		customDataSource.setMaxLifetime(dataSource.getMaxLifetime() != null ? dataSource.getMaxLifetime()
+				: defaultDataSource.getMaxLifetime());
+		Properties dataSourceProperties = new Properties();
+		dataSourceProperties.putAll(defaultDataSource.getDataSourceProperties());
+		dataSourceProperties.putAll(parseDataSourceProperties(dataSource.getDataSourceProperties()));
+		customDataSource.setDataSourceProperties(dataSourceProperties);
 		return customDataSource;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Parses driver properties written as key=value pairs separated by semicolons.
+	 */
+	static Properties parseDataSourceProperties(String dataSourceProperties) {
+		Properties properties = new Properties();
+		if (StringUtils.isBlank(dataSourceProperties)) {
+			return properties;
+		}
+		for (String property : dataSourceProperties.split(";")) {
+			String[] keyValue = property.split("=", 2);
+			if (keyValue.length == 2 && StringUtils.isNotBlank(keyValue[0])) {
+				properties.setProperty(keyValue[0].trim(), keyValue[1].trim());
+			}
+		}
+		return properties;
+	}
+
+	/**
+	 * The pool of a tenant, with the bookkeeping needed for eviction.
+	 */
+	private static class TenantDataSource {
+
+		private final FutureTask<DataSource> future;
+
+		private volatile HikariDataSource hikariDataSource;
+
+		private volatile int maximumPoolSize;
+
+		private volatile long lastAccess = System.currentTimeMillis();
+
+		private volatile boolean closeWhenCreated;
+
+		TenantDataSource(Callable<DataSource> creation) {
+			this.future = new FutureTask<DataSource>(creation) {
+
+				@Override
+				protected void done() {
+					if (closeWhenCreated) {
+						closeCreated();
+					}
+				}
+			};
+		}
+
+		/**
+		 * Closes the pool once it is created, right away if it already is. Either this or the thread completing
+		 * the creation sees the flag, a pool closed twice is only closed once.
+		 */
+		void closeWhenCreated() {
+			closeWhenCreated = true;
+			if (future.isDone()) {
+				closeCreated();
+			}
+		}
+
+		private void closeCreated() {
+			try {
+				DataSource dataSource = future.get();
+				if (dataSource instanceof HikariDataSource) {
+					((HikariDataSource) dataSource).close();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				// Never created, nothing to close
+			}
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package com.souzadriano.multitenant.config.multitenant;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Runs tasks as the tenant of the thread that submitted them.
+ */
+public class TenantAwareTaskDecorator implements TaskDecorator {
+
+	@Override
+	public Runnable decorate(Runnable runnable) {
+		String tenantId = TenantContextHolder.getTenantId();
+		return () -> TenantContextHolder.runAs(tenantId, runnable);
+	}
+}
@@ -0,0 +1,157 @@
+package com.souzadriano.multitenant.config.multitenant;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.Cache;
+
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.expiry.Duration;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.jcache.JCacheRegionFactory;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.springframework.util.ClassUtils;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import io.github.jhipster.config.JHipsterProperties;
+
+/**
+ * Hibernate second-level cache on in-process Ehcache regions, bounded by jhipster.cache.ehcache.
+ * <p>
+ * With the DATABASE multi-tenancy strategy, Hibernate puts the tenant identifier of the session in every
+ * cache key, so the entries of a tenant are never returned to another one. The regions are shared by
+ * all tenants, which keeps the heap bound independent of the number of tenants, and their hits and misses
+ * are reported per tenant of the reading session as hibernate.cache.[tenant].hits and .misses meters. The
+ * entries of a tenant are not evicted on their own, MultiTenantDataSourceLookup evicts all the regions when
+ * the database of a tenant changes.
+ * <p>
+ * The update timestamps of the query cache are keyed by table only, a write in any tenant invalidates the
+ * cached queries of that table for all tenants. They never expire, an expired timestamp could let a query
+ * result cached before the last write be returned.
+ */
+public class TenantCacheRegionFactory extends JCacheRegionFactory {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String METRIC_PREFIX = "hibernate.cache";
+
+	private final transient MetricRegistry metricRegistry;
+
+	private static final long MAX_UPDATE_TIMESTAMPS = 1000;
+
+	private final transient javax.cache.configuration.Configuration<Object, Object> regionConfiguration;
+
+	private final transient javax.cache.configuration.Configuration<Object, Object> timestampsConfiguration;
+
+	private final transient ConcurrentMap<String, TenantMeters> tenantMeters = new ConcurrentHashMap<>();
+
+	public TenantCacheRegionFactory(JHipsterProperties.Cache.Ehcache ehcache, MetricRegistry metricRegistry) {
+		this.metricRegistry = metricRegistry;
+		this.regionConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+			CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+				ResourcePoolsBuilder.heap(ehcache.getMaxEntries()))
+				.withExpiry(Expirations.timeToLiveExpiration(Duration.of(ehcache.getTimeToLiveSeconds(), TimeUnit.SECONDS)))
+				.build());
+		this.timestampsConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+			CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+				ResourcePoolsBuilder.heap(MAX_UPDATE_TIMESTAMPS))
+				.withExpiry(Expirations.noExpiration())
+				.build());
+	}
+
+	@Override
+	protected Cache<Object, Object> createCache(String regionName, Properties properties, CacheDataDescription metadata) {
+		return getCacheManager().createCache(regionName,
+			isTimestampsRegion(regionName) ? timestampsConfiguration : regionConfiguration);
+	}
+
+	@Override
+	public EntityRegion buildEntityRegion(String regionName, Properties properties, CacheDataDescription metadata)
+			throws CacheException {
+		return withTenantMetrics(super.buildEntityRegion(regionName, properties, metadata));
+	}
+
+	@Override
+	public NaturalIdRegion buildNaturalIdRegion(String regionName, Properties properties, CacheDataDescription metadata)
+			throws CacheException {
+		return withTenantMetrics(super.buildNaturalIdRegion(regionName, properties, metadata));
+	}
+
+	@Override
+	public CollectionRegion buildCollectionRegion(String regionName, Properties properties, CacheDataDescription metadata)
+			throws CacheException {
+		return withTenantMetrics(super.buildCollectionRegion(regionName, properties, metadata));
+	}
+
+	@Override
+	public QueryResultsRegion buildQueryResultsRegion(String regionName, Properties properties) throws CacheException {
+		return withTenantMetrics(super.buildQueryResultsRegion(regionName, properties));
+	}
+
+	private boolean isTimestampsRegion(String regionName) {
+		return regionName.endsWith(UpdateTimestampsCache.REGION_NAME);
+	}
+
+	/**
+	 * Counts every read of the region, or of the access strategies it builds, as a hit or a miss of the tenant
+	 * of the reading session. Reads are counted where the session is known, the cache itself only sees keys.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T withTenantMetrics(T target) {
+		if (metricRegistry == null) {
+			return target;
+		}
+		return (T) Proxy.newProxyInstance(getClass().getClassLoader(), ClassUtils.getAllInterfaces(target),
+			(proxy, method, args) -> {
+				Object result;
+				try {
+					result = method.invoke(target, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+				if ("buildAccessStrategy".equals(method.getName())) {
+					return withTenantMetrics(result);
+				}
+				if ("get".equals(method.getName()) && args != null && args[0] instanceof SharedSessionContractImplementor) {
+					String tenantId = ((SharedSessionContractImplementor) args[0]).getTenantIdentifier();
+					TenantMeters meters = meters(Objects.toString(tenantId, "default"));
+					(result != null ? meters.hits : meters.misses).mark();
+				}
+				return result;
+			});
+	}
+
+	private TenantMeters meters(String tenantId) {
+		return tenantMeters.computeIfAbsent(tenantId, tenant -> new TenantMeters(
+			metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, tenant, "hits")),
+			metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, tenant, "misses"))));
+	}
+
+	private static class TenantMeters {
+
+		private final Meter hits;
+
+		private final Meter misses;
+
+		TenantMeters(Meter hits, Meter misses) {
+			this.hits = hits;
+			this.misses = misses;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.souzadriano.multitenant.config.multitenant;
+
+import java.util.concurrent.Callable;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Holds the tenant of the current thread. It is set once per request by the JWTFilter, copied to
+ * {@code @Async} tasks by {@link TenantAwareTaskDecorator}, and read by Hibernate through
+ * {@link CurrentTenantIdentifierResolverImpl} every time it opens a session.
+ * <p>
+ * Background jobs that are not started from a request can select a tenant with
+ * {@link #runAs(String, Runnable)} or {@link #callAs(String, Callable)}.
+ */
+public final class TenantContextHolder {
+
+	private static final ThreadLocal<String> TENANT_ID = new ThreadLocal<>();
+
+	private TenantContextHolder() {
+	}
+
+	/**
+	 * @return the tenant of the current thread, null for the default tenant
+	 */
+	public static String getTenantId() {
+		return TENANT_ID.get();
+	}
+
+	/**
+	 * Sets the tenant of the current thread, a blank tenant selects the default one.
+	 */
+	public static void setTenantId(String tenantId) {
+		if (StringUtils.isBlank(tenantId)) {
+			TENANT_ID.remove();
+		} else {
+			TENANT_ID.set(tenantId);
+		}
+	}
+
+	public static void clear() {
+		TENANT_ID.remove();
+	}
+
+	/**
+	 * Runs the task as the given tenant, then restores the tenant of the current thread.
+	 */
+	public static void runAs(String tenantId, Runnable task) {
+		String previous = getTenantId();
+		setTenantId(tenantId);
+		try {
+			task.run();
+		} finally {
+			setTenantId(previous);
+		}
+	}
+
+	/**
+	 * Calls the task as the given tenant, then restores the tenant of the current thread.
+	 */
+	public static <T> T callAs(String tenantId, Callable<T> task) throws Exception {
+		String previous = getTenantId();
+		setTenantId(tenantId);
+		try {
+			return task.call();
+		} finally {
+			setTenantId(previous);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.souzadriano.multitenant.config.multitenant;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Liquibase migration of one tenant database, as scheduled by {@link TenantMigrationScheduler}.
+ */
+public class TenantMigration {
+
+	public enum Status {
+		PENDING, RUNNING, DONE, UP_TO_DATE, FAILED
+	}
+
+	private final String tenantId;
+
+	private final Instant submittedDate = Instant.now();
+
+	private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+	private volatile Status status = Status.PENDING;
+
+	private volatile Instant startedDate;
+
+	private volatile Instant finishedDate;
+
+	private volatile String error;
+
+	TenantMigration(String tenantId) {
+		this.tenantId = tenantId;
+	}
+
+	void started() {
+		startedDate = Instant.now();
+		status = Status.RUNNING;
+	}
+
+	void done() {
+		finishedDate = Instant.now();
+		status = Status.DONE;
+		completion.complete(null);
+	}
+
+	/**
+	 * Liquibase was skipped, the changelogs had already been applied.
+	 */
+	void upToDate() {
+		finishedDate = Instant.now();
+		status = Status.UP_TO_DATE;
+		completion.complete(null);
+	}
+
+	void failed(Throwable cause) {
+		finishedDate = Instant.now();
+		error = cause.getMessage();
+		status = Status.FAILED;
+		completion.completeExceptionally(cause);
+	}
+
+	public String getTenantId() {
+		return tenantId;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public Instant getSubmittedDate() {
+		return submittedDate;
+	}
+
+	public Instant getStartedDate() {
+		return startedDate;
+	}
+
+	public Instant getFinishedDate() {
+		return finishedDate;
+	}
+
+	/**
+	 * @return how long the migration ran, or has been running so far, null while pending
+	 */
+	public Long getDurationMillis() {
+		Instant started = startedDate;
+		if (started == null) {
+			return null;
+		}
+		Instant finished = finishedDate;
+		return Duration.between(started, finished != null ? finished : Instant.now()).toMillis();
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	@JsonIgnore
+	public CompletableFuture<Void> getCompletion() {
+		return completion;
+	}
+
+	@Override
+	public String toString() {
+		return "TenantMigration{" +
+			"tenantId='" + tenantId + "'" +
+			", status=" + status +
+			", durationMillis=" + getDurationMillis() +
+			"}";
+	}
+}
@@ -0,0 +1,234 @@
+package com.souzadriano.multitenant.config.multitenant;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.apache.commons.codec.binary.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseProperties;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import com.souzadriano.multitenant.config.ApplicationProperties;
+
+import io.github.jhipster.config.JHipsterConstants;
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+
+/**
+ * Runs the Liquibase migrations of the tenant databases on its own thread pool, so that the number of
+ * databases migrated at the same time is bounded by the configured parallelism, and keeps the status of
+ * the latest migration of each tenant.
+ * <p>
+ * After a successful migration, a fingerprint of the changelogs is stored in mt_datasource_config. Later
+ * migrations of the tenant are skipped, without Liquibase locking or reading the tenant database, as long
+ * as the changelogs have not changed.
+ */
+@Component
+public class TenantMigrationScheduler {
+
+	private static final String CHANGELOG = "classpath:config/liquibase/master.xml";
+
+	private static final String CHANGELOG_RESOURCES = "classpath:config/liquibase/**/*";
+
+	private static final String SELECT_FINGERPRINT = "SELECT schema_fingerprint FROM mt_datasource_config WHERE name = ?";
+
+	private static final String UPDATE_FINGERPRINT = "UPDATE mt_datasource_config SET schema_fingerprint = ? WHERE name = ?";
+
+	private final Logger logger = LoggerFactory.getLogger(TenantMigrationScheduler.class);
+
+	private final ConcurrentMap<String, TenantMigration> migrations = new ConcurrentHashMap<>();
+
+	private final ExecutorService executor;
+
+	private final LiquibaseProperties liquibaseProperties;
+
+	private final Environment environment;
+
+	private final ResourceLoader resourceLoader;
+
+	private final JdbcTemplate defaultJdbcTemplate;
+
+	/**
+	 * Fingerprint of the changelogs of this build, null if it could not be computed.
+	 */
+	private final String changelogFingerprint;
+
+	public TenantMigrationScheduler(ApplicationProperties applicationProperties, LiquibaseProperties liquibaseProperties,
+			Environment environment, ResourceLoader resourceLoader, DataSource defaultDataSource) {
+		this.liquibaseProperties = liquibaseProperties;
+		this.environment = environment;
+		this.resourceLoader = resourceLoader;
+		this.defaultJdbcTemplate = new JdbcTemplate(defaultDataSource);
+		this.changelogFingerprint = computeChangelogFingerprint();
+		int parallelism = applicationProperties.getMultitenancy().getMigrationParallelism();
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "tenant-migration-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		logger.debug("Migrating up to {} tenant databases at a time", parallelism);
+	}
+
+	/**
+	 * @return false when Liquibase is disabled, in which case no migration is ever scheduled
+	 */
+	public boolean isEnabled() {
+		return liquibaseProperties.isEnabled() && !environment.acceptsProfiles(JHipsterConstants.SPRING_PROFILE_NO_LIQUIBASE);
+	}
+
+	/**
+	 * Queues the migration of the tenant database. It runs as soon as a migration thread is free.
+	 */
+	public TenantMigration migrate(String tenantId, DataSource dataSource) {
+		TenantMigration migration = new TenantMigration(tenantId);
+		migrations.put(tenantId, migration);
+		executor.execute(() -> run(migration, dataSource));
+		return migration;
+	}
+
+	/**
+	 * Waits until the latest migration of the tenant has finished. Returns at once if the tenant has
+	 * never been migrated by this instance.
+	 *
+	 * @throws ExecutionException if the migration failed
+	 * @throws TimeoutException if the migration is still pending or running after the timeout
+	 */
+	public void awaitMigration(String tenantId, long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		TenantMigration migration = migrations.get(tenantId);
+		if (migration != null) {
+			migration.getCompletion().get(timeout, unit);
+		}
+	}
+
+	/**
+	 * Forgets the fingerprint stored for the tenant, so that its next migration runs Liquibase. Used when
+	 * the tenant may point to another database.
+	 */
+	public void invalidate(String tenantId) {
+		defaultJdbcTemplate.update(UPDATE_FINGERPRINT, null, tenantId);
+	}
+
+	public String getChangelogFingerprint() {
+		return changelogFingerprint;
+	}
+
+	/**
+	 * Drops the status of a tenant that no longer exists.
+	 */
+	public void forget(String tenantId) {
+		migrations.remove(tenantId);
+	}
+
+	public List<TenantMigration> getMigrations() {
+		List<TenantMigration> result = new ArrayList<>(migrations.values());
+		result.sort(Comparator.comparing(TenantMigration::getTenantId));
+		return result;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void run(TenantMigration migration, DataSource dataSource) {
+		migration.started();
+		try {
+			if (isUpToDate(migration.getTenantId())) {
+				logger.debug("Changelogs already applied to tenant: {}", migration.getTenantId());
+				migration.upToDate();
+				return;
+			}
+			logger.debug("Migrating tenant: {}", migration.getTenantId());
+			liquibaseUpdate(dataSource);
+			if (changelogFingerprint != null) {
+				defaultJdbcTemplate.update(UPDATE_FINGERPRINT, changelogFingerprint, migration.getTenantId());
+			}
+			migration.done();
+			logger.info("Migrated tenant {} in {} ms", migration.getTenantId(), migration.getDurationMillis());
+		} catch (LiquibaseException | RuntimeException e) {
+			logger.error("Could not migrate tenant: " + migration.getTenantId(), e);
+			migration.failed(e);
+		}
+	}
+
+	private boolean isUpToDate(String tenantId) {
+		if (changelogFingerprint == null || liquibaseProperties.isDropFirst()) {
+			return false;
+		}
+		List<String> fingerprints = defaultJdbcTemplate.queryForList(SELECT_FINGERPRINT, String.class, tenantId);
+		return fingerprints.contains(changelogFingerprint);
+	}
+
+	/**
+	 * SHA-256 of the Liquibase contexts and of the name and content of every file under config/liquibase,
+	 * which covers master.xml, the included changelogs and the csv files they load.
+	 */
+	private String computeChangelogFingerprint() {
+		try {
+			Resource[] resources = ResourcePatternUtils.getResourcePatternResolver(resourceLoader).getResources(CHANGELOG_RESOURCES);
+			SortedMap<String, Resource> files = new TreeMap<>();
+			for (Resource resource : resources) {
+				String url = resource.getURL().toString();
+				if (resource.isReadable() && !url.endsWith("/")) {
+					files.put(url.substring(url.lastIndexOf("config/liquibase/")), resource);
+				}
+			}
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(String.valueOf(liquibaseProperties.getContexts()).getBytes(StandardCharsets.UTF_8));
+			for (Map.Entry<String, Resource> file : files.entrySet()) {
+				digest.update(file.getKey().getBytes(StandardCharsets.UTF_8));
+				try (InputStream in = file.getValue().getInputStream()) {
+					digest.update(StreamUtils.copyToByteArray(in));
+				}
+			}
+			String fingerprint = Hex.encodeHexString(digest.digest());
+			logger.debug("Fingerprint of {} changelog files: {}", files.size(), fingerprint);
+			return fingerprint;
+		} catch (IOException | NoSuchAlgorithmException e) {
+			logger.warn("Could not compute the changelog fingerprint, tenant migrations will always run Liquibase", e);
+			return null;
+		}
+	}
+
+	private void liquibaseUpdate(DataSource dataSource) throws LiquibaseException {
+		// Runs on the calling migration thread, AsyncSpringLiquibase would hand it to yet another executor
+		SpringLiquibase liquibase = new SpringLiquibase();
+		liquibase.setResourceLoader(resourceLoader);
+		liquibase.setDataSource(dataSource);
+		liquibase.setChangeLog(CHANGELOG);
+		liquibase.setContexts(liquibaseProperties.getContexts());
+		liquibase.setDefaultSchema(liquibaseProperties.getDefaultSchema());
+		liquibase.setDropFirst(liquibaseProperties.isDropFirst());
+		liquibase.setShouldRun(true);
+		liquibase.afterPropertiesSet();
+	}
+}
@@ -1,6 +1,9 @@
 package com.souzadriano.multitenant.domain;
 
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import javax.validation.constraints.*;
 import java.io.Serializable;
@@ -11,6 +14,7 @@ import java.util.Objects;
  */
 @Entity
 @Table(name = "mt_datasource_config")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class DataSourceConfig implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -40,6 +44,37 @@ public class DataSourceConfig implements Serializable {
     @Column(name = "initialize", nullable = false)
     private Boolean initialize;
 
+    @Min(value = 1)
+    @Column(name = "maximum_pool_size")
+    private Integer maximumPoolSize;
+
+    @Min(value = 0)
+    @Column(name = "minimum_idle")
+    private Integer minimumIdle;
+
+    @Min(value = 250)
+    @Column(name = "connection_timeout")
+    private Long connectionTimeout;
+
+    @Min(value = 0)
+    @Column(name = "max_lifetime")
+    private Long maxLifetime;
+
+    /**
+     * Driver DataSource properties, as key=value pairs separated by semicolons
+     * (e.g. statementPoolingCacheSize=100;disableStatementPooling=false).
+     */
+    @Size(max = 1024)
+    @Column(name = "data_source_properties", length = 1024)
+    private String dataSourceProperties;
+
+    /**
+     * Days the audit events of the tenant are kept, null for application.audit.retention-days.
+     */
+    @Min(value = 1)
+    @Column(name = "audit_retention_days")
+    private Integer auditRetentionDays;
+
     public Long getId() {
         return id;
     }
@@ -113,6 +148,84 @@ public class DataSourceConfig implements Serializable {
         this.initialize = initialize;
     }
 
+    public Integer getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    public DataSourceConfig maximumPoolSize(Integer maximumPoolSize) {
+        this.maximumPoolSize = maximumPoolSize;
+        return this;
+    }
+
+    public void setMaximumPoolSize(Integer maximumPoolSize) {
+        this.maximumPoolSize = maximumPoolSize;
+    }
+
+    public Integer getMinimumIdle() {
+        return minimumIdle;
+    }
+
+    public DataSourceConfig minimumIdle(Integer minimumIdle) {
+        this.minimumIdle = minimumIdle;
+        return this;
+    }
+
+    public void setMinimumIdle(Integer minimumIdle) {
+        this.minimumIdle = minimumIdle;
+    }
+
+    public Long getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public DataSourceConfig connectionTimeout(Long connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+        return this;
+    }
+
+    public void setConnectionTimeout(Long connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public Long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    public DataSourceConfig maxLifetime(Long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+        return this;
+    }
+
+    public void setMaxLifetime(Long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    public String getDataSourceProperties() {
+        return dataSourceProperties;
+    }
+
+    public DataSourceConfig dataSourceProperties(String dataSourceProperties) {
+        this.dataSourceProperties = dataSourceProperties;
+        return this;
+    }
+
+    public void setDataSourceProperties(String dataSourceProperties) {
+        this.dataSourceProperties = dataSourceProperties;
+    }
+
+    public Integer getAuditRetentionDays() {
+        return auditRetentionDays;
+    }
+
+    public DataSourceConfig auditRetentionDays(Integer auditRetentionDays) {
+        this.auditRetentionDays = auditRetentionDays;
+        return this;
+    }
+
+    public void setAuditRetentionDays(Integer auditRetentionDays) {
+        this.auditRetentionDays = auditRetentionDays;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -142,6 +255,12 @@ public class DataSourceConfig implements Serializable {
             ", username='" + getUsername() + "'" +
             ", password='" + getPassword() + "'" +
             ", initialize='" + isInitialize() + "'" +
+            ", maximumPoolSize='" + getMaximumPoolSize() + "'" +
+            ", minimumIdle='" + getMinimumIdle() + "'" +
+            ", connectionTimeout='" + getConnectionTimeout() + "'" +
+            ", maxLifetime='" + getMaxLifetime() + "'" +
+            ", dataSourceProperties='" + getDataSourceProperties() + "'" +
+            ", auditRetentionDays='" + getAuditRetentionDays() + "'" +
             "}";
     }
 }
@@ -1,20 +1,27 @@
 package com.souzadriano.multitenant.repository;
 
+import com.souzadriano.multitenant.config.ApplicationProperties;
 import com.souzadriano.multitenant.config.Constants;
+import com.souzadriano.multitenant.config.audit.AsyncAuditEventWriter;
 import com.souzadriano.multitenant.config.audit.AuditEventConverter;
 import com.souzadriano.multitenant.domain.PersistentAuditEvent;
 
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.boot.actuate.audit.AuditEventRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 /**
  * An implementation of Spring Boot's AuditEventRepository.
+ * <p>
+ * New events are saved in the background by the {@link AsyncAuditEventWriter}, so that authentications do not
+ * wait for a transaction of their own.
  */
 @Repository
 public class CustomAuditEventRepository implements AuditEventRepository {
@@ -25,43 +32,57 @@ public class CustomAuditEventRepository implements AuditEventRepository {
 
     private final AuditEventConverter auditEventConverter;
 
+    private final AsyncAuditEventWriter auditEventWriter;
+
+    private final ApplicationProperties.Audit properties;
+
     public CustomAuditEventRepository(PersistenceAuditEventRepository persistenceAuditEventRepository,
-            AuditEventConverter auditEventConverter) {
+            AuditEventConverter auditEventConverter, AsyncAuditEventWriter auditEventWriter,
+            ApplicationProperties applicationProperties) {
 
         this.persistenceAuditEventRepository = persistenceAuditEventRepository;
         this.auditEventConverter = auditEventConverter;
+        this.auditEventWriter = auditEventWriter;
+        this.properties = applicationProperties.getAudit();
     }
 
     @Override
     public List<AuditEvent> find(Date after) {
-        Iterable<PersistentAuditEvent> persistentAuditEvents =
-            persistenceAuditEventRepository.findByAuditEventDateAfter(after.toInstant());
-        return auditEventConverter.convertToAuditEvent(persistentAuditEvents);
+        return find(null, after, null);
     }
 
     @Override
     public List<AuditEvent> find(String principal, Date after) {
-        Iterable<PersistentAuditEvent> persistentAuditEvents;
-        if (principal == null && after == null) {
-            persistentAuditEvents = persistenceAuditEventRepository.findAll();
-        } else if (after == null) {
-            persistentAuditEvents = persistenceAuditEventRepository.findByPrincipal(principal);
-        } else {
-            persistentAuditEvents =
-                persistenceAuditEventRepository.findByPrincipalAndAuditEventDateAfter(principal, after.toInstant());
-        }
-        return auditEventConverter.convertToAuditEvent(persistentAuditEvents);
+        return find(principal, after, null);
     }
 
+    /**
+     * Finds the newest events, at most application.audit.find-max-results of them. The events are selected on the
+     * (principal, event_date) or (event_type, event_date) index, and their data read with a second query.
+     */
     @Override
     public List<AuditEvent> find(String principal, Date after, String type) {
-        Iterable<PersistentAuditEvent> persistentAuditEvents =
-            persistenceAuditEventRepository.findByPrincipalAndAuditEventDateAfterAndAuditEventType(principal, after.toInstant(), type);
-        return auditEventConverter.convertToAuditEvent(persistentAuditEvents);
+        Pageable newest = new PageRequest(0, Math.max(1, properties.getFindMaxResults()));
+        // Audit events are never dated before the epoch
+        Instant from = after != null ? after.toInstant() : Instant.EPOCH;
+        List<Long> ids;
+        if (principal != null && type != null) {
+            ids = persistenceAuditEventRepository.findIdsByPrincipalAndAuditEventTypeAndAuditEventDateAfter(principal, type,
+                from, newest);
+        } else if (principal != null) {
+            ids = persistenceAuditEventRepository.findIdsByPrincipalAndAuditEventDateAfter(principal, from, newest);
+        } else if (type != null) {
+            ids = persistenceAuditEventRepository.findIdsByAuditEventTypeAndAuditEventDateAfter(type, from, newest);
+        } else {
+            ids = persistenceAuditEventRepository.findIdsByAuditEventDateAfter(from, newest);
+        }
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return auditEventConverter.convertToAuditEvent(persistenceAuditEventRepository.findAllWithDataByIdIn(ids));
     }
 
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void add(AuditEvent event) {
         if (!AUTHORIZATION_FAILURE.equals(event.getType()) &&
             !Constants.ANONYMOUS_USER.equals(event.getPrincipal())) {
@@ -71,7 +92,7 @@ public class CustomAuditEventRepository implements AuditEventRepository {
             persistentAuditEvent.setAuditEventType(event.getType());
             persistentAuditEvent.setAuditEventDate(event.getTimestamp().toInstant());
             persistentAuditEvent.setData(auditEventConverter.convertDataToStrings(event.getData()));
-            persistenceAuditEventRepository.save(persistentAuditEvent);
+            auditEventWriter.write(persistentAuditEvent);
         }
     }
 }
@@ -4,8 +4,10 @@ import com.souzadriano.multitenant.domain.PersistentAuditEvent;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -13,13 +15,39 @@ import java.util.List;
  */
 public interface PersistenceAuditEventRepository extends JpaRepository<PersistentAuditEvent, Long> {
 
-    List<PersistentAuditEvent> findByPrincipal(String principal);
+    /**
+     * Reads the events with their data in a single query. Only for a bounded list of ids: with a page, Hibernate
+     * would apply the limit in memory, so the pages are read first, events or ids alone, and their data then.
+     */
+    String WITH_DATA = "select distinct event from PersistentAuditEvent event left join fetch event.data";
 
-    List<PersistentAuditEvent> findByAuditEventDateAfter(Instant after);
+    String NEWEST_FIRST = " order by event.auditEventDate desc";
 
-    List<PersistentAuditEvent> findByPrincipalAndAuditEventDateAfter(String principal, Instant after);
+    @Query(WITH_DATA + " where event.id in ?1" + NEWEST_FIRST)
+    List<PersistentAuditEvent> findAllWithDataByIdIn(Collection<Long> ids);
 
-    List<PersistentAuditEvent> findByPrincipalAndAuditEventDateAfterAndAuditEventType(String principle, Instant after, String type);
+    @Query("select event.id from PersistentAuditEvent event where event.auditEventDate > ?1" + NEWEST_FIRST)
+    List<Long> findIdsByAuditEventDateAfter(Instant after, Pageable pageable);
+
+    @Query("select event.id from PersistentAuditEvent event where event.principal = ?1 and event.auditEventDate > ?2"
+        + NEWEST_FIRST)
+    List<Long> findIdsByPrincipalAndAuditEventDateAfter(String principal, Instant after, Pageable pageable);
+
+    @Query("select event.id from PersistentAuditEvent event where event.auditEventType = ?1 and event.auditEventDate > ?2"
+        + NEWEST_FIRST)
+    List<Long> findIdsByAuditEventTypeAndAuditEventDateAfter(String type, Instant after, Pageable pageable);
+
+    @Query("select event.id from PersistentAuditEvent event where event.principal = ?1 and event.auditEventType = ?2"
+        + " and event.auditEventDate > ?3" + NEWEST_FIRST)
+    List<Long> findIdsByPrincipalAndAuditEventTypeAndAuditEventDateAfter(String principal, String type, Instant after,
+        Pageable pageable);
 
     Page<PersistentAuditEvent> findAllByAuditEventDateBetween(Instant fromDate, Instant toDate, Pageable pageable);
+
+    List<PersistentAuditEvent> findAllByIdLessThanOrderByIdDesc(Long id, Pageable pageable);
+
+    List<PersistentAuditEvent> findAllByAuditEventDateBetweenAndIdLessThanOrderByIdDesc(Instant fromDate, Instant toDate,
+        Long id, Pageable pageable);
+
+    long countByAuditEventDateBetween(Instant fromDate, Instant toDate);
 }
@@ -1,11 +1,19 @@
 package com.souzadriano.multitenant.repository;
 
 import com.souzadriano.multitenant.domain.User;
+import com.souzadriano.multitenant.service.dto.UserDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.time.Instant;
@@ -16,21 +24,67 @@ import java.time.Instant;
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    /**
+     * Puts the result in the Hibernate query cache, where it is keyed by tenant and dropped on any write to
+     * jhi_user. The users themselves are then read from the second-level cache.
+     */
+    String CACHEABLE = "org.hibernate.cacheable";
+
+    /**
+     * Selects the columns of a UserDTO without its authorities, so that list queries neither load the entities
+     * into the persistence context nor initialize their authorities one batch at a time.
+     */
+    String USER_DTO = "new com.souzadriano.multitenant.service.dto.UserDTO(u.id, u.login, u.firstName, u.lastName, "
+        + "u.email, u.activated, u.imageUrl, u.langKey, u.createdBy, u.createdDate, u.lastModifiedBy, u.lastModifiedDate)";
+
     Optional<User> findOneByActivationKey(String activationKey);
 
     List<User> findAllByActivatedIsFalseAndCreatedDateBefore(Instant dateTime);
 
     Optional<User> findOneByResetKey(String resetKey);
 
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
     Optional<User> findOneByEmail(String email);
 
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
     Optional<User> findOneByLogin(String login);
 
     @EntityGraph(attributePaths = "authorities")
     User findOneWithAuthoritiesById(Long id);
 
-    @EntityGraph(attributePaths = "authorities")
+    @EntityGraph(attributePaths = {"authorities", "dataSourceConfig"})
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
     Optional<User> findOneWithAuthoritiesByLogin(String login);
 
-    Page<User> findAllByLoginNot(Pageable pageable, String login);
+    List<User> findAllByLoginIn(Collection<String> logins);
+
+    List<User> findAllByLoginInOrEmailIn(Collection<String> logins, Collection<String> emails);
+
+    @Query(value = "select " + USER_DTO + " from User u where u.login <> ?1",
+        countQuery = "select count(u) from User u where u.login <> ?1")
+    Page<UserDTO> findAllDTOByLoginNot(String excludedLogin, Pageable pageable);
+
+    @Query("select " + USER_DTO + " from User u where u.login <> ?1 and u.id > ?2 order by u.id")
+    List<UserDTO> findAllDTOByLoginNotAndIdGreaterThan(String excludedLogin, Long id, Pageable pageable);
+
+    @Query("select " + USER_DTO + " from User u where u.login <> ?1 and u.login > ?2 order by u.login")
+    List<UserDTO> findAllDTOByLoginNotAndLoginGreaterThan(String excludedLogin, String login, Pageable pageable);
+
+    /**
+     * @return the pairs of user id and authority name of the users
+     */
+    @Query("select u.id, a.name from User u join u.authorities a where u.id in ?1")
+    List<Object[]> findAuthorityNamesByIdIn(Collection<Long> ids);
+
+    long countByLoginNot(String login);
+
+    /**
+     * Replaces the password hash only if it is still the expected one, so that a concurrent password change wins.
+     *
+     * @return the number of updated users, 0 or 1
+     */
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = ?3 where u.login = ?1 and u.password = ?2")
+    int updatePasswordIfUnchanged(String login, String expectedPassword, String newPassword);
 }
@@ -0,0 +1,62 @@
+package com.souzadriano.multitenant.security;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+/**
+ * Utility class for the BCrypt cost: the cost of a stored hash, and the cost matching a hash time on this machine.
+ * <p>
+ * The calibrated cost depends on the hardware, it is only a recommendation for the cost shared by all nodes.
+ */
+public final class BcryptStrength {
+
+    private static final Logger log = LoggerFactory.getLogger(BcryptStrength.class);
+
+    private static final Pattern BCRYPT_HASH = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private static final int MAX_STRENGTH = 31;
+
+    private static final int CALIBRATION_RUNS = 3;
+
+    private BcryptStrength() {
+    }
+
+    /**
+     * @return the cost the hash was computed with, or -1 if it is not a BCrypt hash
+     */
+    public static int of(String hash) {
+        if (hash == null) {
+            return -1;
+        }
+        Matcher matcher = BCRYPT_HASH.matcher(hash);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Measures a hash with the minimum cost, and returns the highest cost whose hash time should stay within the
+     * target, each increment of the cost doubling the work. Never returns less than the minimum cost.
+     */
+    public static int calibrate(int minimumStrength, long targetMillis) {
+        String salt = BCrypt.gensalt(minimumStrength);
+        BCrypt.hashpw("calibration", salt); // warm up
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_RUNS; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw("calibration", salt);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        double estimatedMillis = bestNanos / 1_000_000d;
+        int strength = minimumStrength;
+        while (strength < MAX_STRENGTH && estimatedMillis * 2 <= targetMillis) {
+            strength++;
+            estimatedMillis *= 2;
+        }
+        log.info("BCrypt cost {} takes {} ms on this machine, cost {} matches a target of {} ms", minimumStrength,
+            bestNanos / 1_000_000, strength, targetMillis);
+        return strength;
+    }
+}
@@ -0,0 +1,106 @@
+package com.souzadriano.multitenant.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent cache of bounded size, whose entries expire at a time given with each of them.
+ * <p>
+ * Reads take no lock and do not change the structure of the map, they only record when the entry was last used.
+ * When an insertion takes the cache over its maximum size, the expired entries are dropped, then the least recently
+ * used ones until a tenth of the room is free again. A single thread evicts at a time, the others go on, and the
+ * cost of an eviction is spread over the insertions that fill the room it made.
+ */
+public class BoundedCache<K, V> {
+
+    private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+
+    /**
+     * Size the cache is brought back to by an eviction.
+     */
+    private final int evictedSize;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    public BoundedCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The maximum size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.evictedSize = maxSize - Math.max(1, maxSize / 10);
+    }
+
+    /**
+     * @return the value, or null if there is none or it has expired
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiration <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        return entry.value;
+    }
+
+    /**
+     * @param expiration the time the value expires at, in milliseconds since the epoch
+     */
+    public void put(K key, V value, long expiration) {
+        entries.put(key, new Entry<>(value, expiration));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            entries.values().removeIf(entry -> entry.expiration <= now);
+            int excess = entries.size() - evictedSize;
+            if (excess <= 0) {
+                return;
+            }
+            // Sorted on a snapshot, as the entries keep being read meanwhile
+            long[] lastAccesses = entries.values().stream().mapToLong(entry -> entry.lastAccess).sorted().toArray();
+            if (lastAccesses.length == 0) {
+                return;
+            }
+            long threshold = lastAccesses[Math.min(excess, lastAccesses.length) - 1];
+            entries.values().removeIf(entry -> entry.lastAccess <= threshold);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+
+        private final long expiration;
+
+        private volatile long lastAccess = System.nanoTime();
+
+        Entry(V value, long expiration) {
+            this.value = value;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.souzadriano.multitenant.security;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.souzadriano.multitenant.config.ApplicationProperties;
+
+/**
+ * Runs the hashing and verification of the delegate encoder on a dedicated, size-limited pool, so that a burst
+ * of logins keeps at most a few processors busy with BCrypt instead of every request thread. When all threads
+ * are busy and the queue is full, the call fails at once with a {@link PasswordEncoderBusyException}.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private static final String METRIC_PREFIX = "security.password-encoder";
+
+    private final Logger log = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    private final PasswordEncoder delegate;
+
+    private final ThreadPoolExecutor executor;
+
+    private final int retryAfterSeconds;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    private final Meter rejections;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, ApplicationProperties.Bcrypt properties,
+            MetricRegistry metricRegistry) {
+        this.delegate = delegate;
+        this.retryAfterSeconds = properties.getRetryAfterSeconds();
+        int threads = properties.getThreads() > 0 ? properties.getThreads() : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())), runnable -> {
+                Thread thread = new Thread(runnable, "password-encoder-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.encodeTimer = metricRegistry.timer(MetricRegistry.name(METRIC_PREFIX, "encode"));
+        this.matchesTimer = metricRegistry.timer(MetricRegistry.name(METRIC_PREFIX, "matches"));
+        this.rejections = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "rejected"));
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "queue-depth"),
+            (Gauge<Integer>) () -> executor.getQueue().size());
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "active"),
+            (Gauge<Integer>) executor::getActiveCount);
+        log.debug("Hashing up to {} passwords at a time", threads);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Hashes the passwords in parallel on the pool, never queuing more of them than there are threads, so that
+     * logins still find room in the queue during a bulk import.
+     *
+     * @return the hashes, in the order of the passwords
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        List<String> encodedPasswords = new ArrayList<>(rawPasswords.size());
+        int window = executor.getMaximumPoolSize();
+        for (int start = 0; start < rawPasswords.size(); start += window) {
+            List<Future<String>> futures = new ArrayList<>(window);
+            try {
+                for (CharSequence rawPassword : rawPasswords.subList(start, Math.min(start + window, rawPasswords.size()))) {
+                    futures.add(submit(encodeTimer, () -> delegate.encode(rawPassword)));
+                }
+            } catch (PasswordEncoderBusyException e) {
+                futures.forEach(future -> future.cancel(true));
+                throw e;
+            }
+            for (Future<String> future : futures) {
+                encodedPasswords.add(await(future));
+            }
+        }
+        return encodedPasswords;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T execute(Timer timer, Callable<T> operation) {
+        return await(submit(timer, operation));
+    }
+
+    private <T> Future<T> submit(Timer timer, Callable<T> operation) {
+        try {
+            return executor.submit(() -> {
+                try (Timer.Context ignored = timer.time()) {
+                    return operation.call();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejections.mark();
+            throw new PasswordEncoderBusyException(retryAfterSeconds);
+        }
+    }
+
+    private <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the password encoder", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.souzadriano.multitenant.security;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.souzadriano.multitenant.domain.Authority;
+import com.souzadriano.multitenant.repository.AuthorityRepository;
+
+/**
+ * Canonical GrantedAuthority instances, shared by every authentication instead of being allocated per request.
+ * <p>
+ * The known authorities are loaded once the application is ready, and not while the context is created, as the
+ * database may not be migrated yet. Until then, and for unknown authorities, they are added on first use. Lists of authorities are
+ * shared too, keyed by their comma separated form as found in the JWT claim.
+ */
+@Component
+public class GrantedAuthorityRegistry {
+
+    /**
+     * Upper bound of the shared authority lists, other combinations are built on each call.
+     */
+    private static final int MAX_SHARED_COMBINATIONS = 256;
+
+    private final Logger log = LoggerFactory.getLogger(GrantedAuthorityRegistry.class);
+
+    private final ConcurrentMap<String, GrantedAuthority> authorities = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, List<GrantedAuthority>> combinations = new ConcurrentHashMap<>();
+
+    private final AuthorityRepository authorityRepository;
+
+    public GrantedAuthorityRegistry(AuthorityRepository authorityRepository) {
+        this.authorityRepository = authorityRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerKnownAuthorities() {
+        try {
+            for (Authority authority : authorityRepository.findAll()) {
+                get(authority.getName());
+            }
+            log.debug("Registered authorities: {}", authorities.keySet());
+        } catch (RuntimeException e) {
+            log.warn("Could not load the authorities, they will be registered on first use: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return the shared instance of the authority
+     */
+    public GrantedAuthority get(String authority) {
+        GrantedAuthority grantedAuthority = authorities.get(authority);
+        if (grantedAuthority == null) {
+            grantedAuthority = authorities.computeIfAbsent(authority, SimpleGrantedAuthority::new);
+        }
+        return grantedAuthority;
+    }
+
+    /**
+     * @param commaSeparatedAuthorities authorities as stored in the JWT claim, e.g. "ROLE_ADMIN,ROLE_USER"
+     * @return a shared, unmodifiable list of the authorities
+     */
+    public List<GrantedAuthority> getAll(String commaSeparatedAuthorities) {
+        List<GrantedAuthority> grantedAuthorities = combinations.get(commaSeparatedAuthorities);
+        if (grantedAuthorities != null) {
+            return grantedAuthorities;
+        }
+        grantedAuthorities = split(commaSeparatedAuthorities);
+        if (combinations.size() < MAX_SHARED_COMBINATIONS) {
+            List<GrantedAuthority> previous = combinations.putIfAbsent(commaSeparatedAuthorities, grantedAuthorities);
+            if (previous != null) {
+                return previous;
+            }
+        }
+        return grantedAuthorities;
+    }
+
+    private List<GrantedAuthority> split(String commaSeparatedAuthorities) {
+        String[] names = StringUtils.tokenizeToStringArray(commaSeparatedAuthorities, ",");
+        if (names.length == 0) {
+            return Collections.emptyList();
+        }
+        if (names.length == 1) {
+            return Collections.singletonList(get(names[0]));
+        }
+        List<GrantedAuthority> grantedAuthorities = new ArrayList<>(names.length);
+        for (String name : names) {
+            grantedAuthorities.add(get(name));
+        }
+        return Collections.unmodifiableList(grantedAuthorities);
+    }
+}
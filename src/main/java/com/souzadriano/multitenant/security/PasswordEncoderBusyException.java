@@ -0,0 +1,20 @@
+package com.souzadriano.multitenant.security;
+
+/**
+ * This exception is thrown when every password hashing thread is busy and the queue is full.
+ */
+public class PasswordEncoderBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int retryAfterSeconds;
+
+    public PasswordEncoderBusyException(int retryAfterSeconds) {
+        super("Too many password hash operations in progress");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
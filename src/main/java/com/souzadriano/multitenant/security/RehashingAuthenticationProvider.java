@@ -0,0 +1,75 @@
+package com.souzadriano.multitenant.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.souzadriano.multitenant.repository.UserRepository;
+
+/**
+ * Authenticates users with their password, and once a password has been verified, rehashes it in the background
+ * when it was stored with a lower BCrypt cost than the configured one. Stored hashes thereby follow the cost of
+ * the deployment without a forced password reset. Hashes with a higher cost are kept, so that nodes configured
+ * differently during a rollout do not rewrite them back and forth.
+ */
+public class RehashingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final Logger log = LoggerFactory.getLogger(RehashingAuthenticationProvider.class);
+
+    private final UserDetailsService userDetailsService;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final UserRepository userRepository;
+
+    private final TaskExecutor taskExecutor;
+
+    private final int strength;
+
+    public RehashingAuthenticationProvider(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder,
+            int strength, UserRepository userRepository, TaskExecutor taskExecutor) {
+        this.userDetailsService = userDetailsService;
+        this.passwordEncoder = passwordEncoder;
+        this.strength = strength;
+        this.userRepository = userRepository;
+        this.taskExecutor = taskExecutor;
+        setUserDetailsService(userDetailsService);
+        setPasswordEncoder(passwordEncoder);
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(org.springframework.security.core.userdetails.UserDetails userDetails,
+            UsernamePasswordAuthenticationToken authentication) throws AuthenticationException {
+        super.additionalAuthenticationChecks(userDetails, authentication);
+        String storedPassword = userDetails.getPassword();
+        int storedStrength = BcryptStrength.of(storedPassword);
+        if (storedStrength != -1 && storedStrength < strength) {
+            scheduleRehash(userDetails.getUsername(), authentication.getCredentials().toString(), storedPassword);
+        }
+    }
+
+    private void scheduleRehash(String login, String rawPassword, String storedPassword) {
+        try {
+            taskExecutor.execute(() -> rehash(login, rawPassword, storedPassword));
+        } catch (TaskRejectedException e) {
+            log.debug("Could not schedule the password rehash of {}, it will be retried on the next login", login);
+        }
+    }
+
+    private void rehash(String login, String rawPassword, String storedPassword) {
+        try {
+            String newPassword = passwordEncoder.encode(rawPassword);
+            if (userRepository.updatePasswordIfUnchanged(login, storedPassword, newPassword) > 0) {
+                userDetailsService.evict(login);
+                log.debug("Rehashed the password of {} with cost {}", login, strength);
+            }
+        } catch (PasswordEncoderBusyException e) {
+            log.debug("Password encoder busy, the password of {} will be rehashed on the next login", login);
+        }
+    }
+}
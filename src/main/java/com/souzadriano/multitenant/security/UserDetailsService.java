@@ -1,18 +1,21 @@
 package com.souzadriano.multitenant.security;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.souzadriano.multitenant.domain.DataSourceConfig;
 import com.souzadriano.multitenant.domain.User;
@@ -26,10 +29,28 @@ public class UserDetailsService implements org.springframework.security.core.use
 
     private final Logger log = LoggerFactory.getLogger(UserDetailsService.class);
 
+    /**
+     * How long a resolved user is reused, bounds the staleness of changes not made through UserService.
+     */
+    private static final long CACHE_TIME_TO_LIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Upper bound of the user cache, the least recently used users are dropped when it is reached.
+     */
+    private static final int MAX_CACHED_USERS = 10000;
+
+    /**
+     * Activated users, keyed by lowercase login. Unknown and not activated users are never cached.
+     */
+    private final BoundedCache<String, CachedUser> userCache = new BoundedCache<>(MAX_CACHED_USERS);
+
     private final UserRepository userRepository;
 
-    public UserDetailsService(UserRepository userRepository) {
+    private final GrantedAuthorityRegistry grantedAuthorityRegistry;
+
+    public UserDetailsService(UserRepository userRepository, GrantedAuthorityRegistry grantedAuthorityRegistry) {
         this.userRepository = userRepository;
+        this.grantedAuthorityRegistry = grantedAuthorityRegistry;
     }
 
     @Override
@@ -37,13 +58,17 @@ public class UserDetailsService implements org.springframework.security.core.use
     public UserDetails loadUserByUsername(final String login) {
         log.debug("Authenticating {}", login);
         String lowercaseLogin = login.toLowerCase(Locale.ENGLISH);
+        CachedUser cached = userCache.get(lowercaseLogin);
+        if (cached != null) {
+            return cached.toUserDetails();
+        }
         Optional<User> userFromDatabase = userRepository.findOneWithAuthoritiesByLogin(lowercaseLogin);
         return userFromDatabase.map(user -> {
             if (!user.getActivated()) {
                 throw new UserNotActivatedException("User " + lowercaseLogin + " was not activated");
             }
             List<GrantedAuthority> grantedAuthorities = user.getAuthorities().stream()
-                    .map(authority -> new SimpleGrantedAuthority(authority.getName()))
+                    .map(authority -> grantedAuthorityRegistry.get(authority.getName()))
                 .collect(Collectors.toList());
             
             DataSourceConfig dataSourceConfig = user.getDataSourceConfig();
@@ -52,11 +77,57 @@ public class UserDetailsService implements org.springframework.security.core.use
             if (dataSourceConfig != null) {
             	tenantId = dataSourceConfig.getName();
             }
-            com.souzadriano.multitenant.security.UserDetails userDetails = new com.souzadriano.multitenant.security.UserDetails(lowercaseLogin,
-                user.getPassword(),
-                grantedAuthorities, tenantId);
-			return userDetails;
+            CachedUser resolved = new CachedUser(lowercaseLogin, user.getPassword(), grantedAuthorities, tenantId);
+            userCache.put(lowercaseLogin, resolved, System.currentTimeMillis() + CACHE_TIME_TO_LIVE_MILLIS);
+			return resolved.toUserDetails();
         }).orElseThrow(() -> new UsernameNotFoundException("User " + lowercaseLogin + " was not found in the " +
         "database"));
     }
+
+    /**
+     * Drops the cached user, to be called whenever the password, activation, authorities or tenant of the user
+     * change. Within a transaction, the user is dropped again after commit, so that a login running concurrently
+     * cannot cache the state from before the change.
+     */
+    public void evict(String login) {
+        if (login == null) {
+            return;
+        }
+        String lowercaseLogin = login.toLowerCase(Locale.ENGLISH);
+        userCache.remove(lowercaseLogin);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    userCache.remove(lowercaseLogin);
+                }
+            });
+        }
+    }
+
+    /**
+     * Resolved state of a user. A new UserDetails is built from it for every authentication, as the
+     * authentication manager erases the password of the UserDetails it is given.
+     */
+    private static class CachedUser {
+
+        private final String login;
+
+        private final String password;
+
+        private final Collection<GrantedAuthority> authorities;
+
+        private final String tenantId;
+
+        CachedUser(String login, String password, Collection<GrantedAuthority> authorities, String tenantId) {
+            this.login = login;
+            this.password = password;
+            this.authorities = authorities;
+            this.tenantId = tenantId;
+        }
+
+        com.souzadriano.multitenant.security.UserDetails toUserDetails() {
+            return new com.souzadriano.multitenant.security.UserDetails(login, password, authorities, tenantId);
+        }
+    }
 }
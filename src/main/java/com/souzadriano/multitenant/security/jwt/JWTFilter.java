@@ -1,5 +1,8 @@
 package com.souzadriano.multitenant.security.jwt;
 
+import com.souzadriano.multitenant.config.multitenant.TenantContextHolder;
+import com.souzadriano.multitenant.security.UserDetails;
+
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.util.StringUtils;
@@ -14,7 +17,8 @@ import java.io.IOException;
 
 /**
  * Filters incoming requests and installs a Spring Security principal if a header corresponding to a valid user is
- * found.
+ * found. The tenant of the user is resolved here once and kept in the {@link TenantContextHolder} for the rest of
+ * the request.
  */
 public class JWTFilter extends GenericFilterBean {
 
@@ -29,11 +33,27 @@ public class JWTFilter extends GenericFilterBean {
         throws IOException, ServletException {
         HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
         String jwt = resolveToken(httpServletRequest);
-        if (StringUtils.hasText(jwt) && this.tokenProvider.validateToken(jwt)) {
-            Authentication authentication = this.tokenProvider.getAuthentication(jwt);
+        String tenantId = null;
+        Authentication authentication = StringUtils.hasText(jwt) ? this.tokenProvider.getValidAuthentication(jwt) : null;
+        if (authentication != null) {
             SecurityContextHolder.getContext().setAuthentication(authentication);
+            tenantId = resolveTenantId(authentication);
+        }
+        String previousTenantId = TenantContextHolder.getTenantId();
+        TenantContextHolder.setTenantId(tenantId);
+        try {
+            filterChain.doFilter(servletRequest, servletResponse);
+        } finally {
+            TenantContextHolder.setTenantId(previousTenantId);
+        }
+    }
+
+    private String resolveTenantId(Authentication authentication) {
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof UserDetails) {
+            return ((UserDetails) principal).getTenantId();
         }
-        filterChain.doFilter(servletRequest, servletResponse);
+        return null;
     }
 
     private String resolveToken(HttpServletRequest request){
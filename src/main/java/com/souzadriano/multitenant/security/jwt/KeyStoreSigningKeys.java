@@ -0,0 +1,145 @@
+package com.souzadriano.multitenant.security.jwt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.interfaces.ECKey;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
+
+import com.souzadriano.multitenant.config.ApplicationProperties;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+
+/**
+ * RS256 or ES256/ES384/ES512 keys loaded once from a key store. The private key of the configured entry signs new
+ * tokens, with the entry id as "kid" header, and the certificates of all entries verify tokens according to their
+ * "kid", so that keys can be rotated by adding the new entry before switching the signing alias to it.
+ */
+class KeyStoreSigningKeys extends SigningKeyResolverAdapter {
+
+    private final Map<String, PublicKey> verificationKeys;
+
+    private final String signingKeyId;
+
+    private final PrivateKey signingKey;
+
+    private final SignatureAlgorithm signatureAlgorithm;
+
+    private KeyStoreSigningKeys(Map<String, PublicKey> verificationKeys, String signingKeyId, PrivateKey signingKey) {
+        this.verificationKeys = verificationKeys;
+        this.signingKeyId = signingKeyId;
+        this.signingKey = signingKey;
+        this.signatureAlgorithm = signingKey != null ? signatureAlgorithm(signingKey) : null;
+    }
+
+    static KeyStoreSigningKeys load(ApplicationProperties.Jwt properties) {
+        char[] keyStorePassword = toChars(properties.getKeyStorePassword());
+        try (InputStream in = ResourceUtils.getURL(properties.getKeyStore()).openStream()) {
+            KeyStore keyStore = KeyStore.getInstance(properties.getKeyStoreType());
+            keyStore.load(in, keyStorePassword);
+
+            Map<String, PublicKey> verificationKeys = new HashMap<>();
+            Enumeration<String> aliases = keyStore.aliases();
+            while (aliases.hasMoreElements()) {
+                String alias = aliases.nextElement();
+                Certificate certificate = keyStore.getCertificate(alias);
+                if (certificate != null) {
+                    verificationKeys.put(alias, certificate.getPublicKey());
+                }
+            }
+
+            PrivateKey signingKey = null;
+            if (StringUtils.hasText(properties.getKeyAlias())) {
+                char[] keyPassword = properties.getKeyPassword() != null ? toChars(properties.getKeyPassword()) : keyStorePassword;
+                Key key = keyStore.getKey(properties.getKeyAlias(), keyPassword);
+                if (!(key instanceof PrivateKey)) {
+                    throw new IllegalStateException("No private key found for entry " + properties.getKeyAlias() + " of "
+                        + properties.getKeyStore());
+                }
+                signingKey = (PrivateKey) key;
+            }
+            return new KeyStoreSigningKeys(Collections.unmodifiableMap(verificationKeys), properties.getKeyAlias(), signingKey);
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("Could not load the JWT keys from " + properties.getKeyStore(), e);
+        }
+    }
+
+    private static char[] toChars(String password) {
+        return password != null ? password.toCharArray() : null;
+    }
+
+    private static SignatureAlgorithm signatureAlgorithm(PrivateKey key) {
+        switch (key.getAlgorithm()) {
+            case "RSA":
+                return SignatureAlgorithm.RS256;
+            case "EC":
+                return ellipticCurveAlgorithm(key);
+            default:
+                throw new IllegalStateException("Unsupported JWT signing key algorithm: " + key.getAlgorithm());
+        }
+    }
+
+    /**
+     * The ECDSA algorithm matching the curve of the key, so that the "alg" header is right whatever the curve.
+     */
+    private static SignatureAlgorithm ellipticCurveAlgorithm(PrivateKey key) {
+        int fieldSize = key instanceof ECKey ? ((ECKey) key).getParams().getCurve().getField().getFieldSize() : 0;
+        switch (fieldSize) {
+            case 256:
+                return SignatureAlgorithm.ES256;
+            case 384:
+                return SignatureAlgorithm.ES384;
+            case 521:
+                return SignatureAlgorithm.ES512;
+            default:
+                throw new IllegalStateException("Unsupported JWT signing key curve of " + fieldSize
+                    + " bits, only P-256, P-384 and P-521 keys can sign tokens");
+        }
+    }
+
+    boolean canSign() {
+        return signingKey != null;
+    }
+
+    String getSigningKeyId() {
+        return signingKeyId;
+    }
+
+    PrivateKey getSigningKey() {
+        return signingKey;
+    }
+
+    SignatureAlgorithm getSignatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    @Override
+    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+        SignatureAlgorithm algorithm = SignatureAlgorithm.forName(header.getAlgorithm());
+        if (!algorithm.isRsa() && !algorithm.isEllipticCurve()) {
+            // Never verify a HMAC signature with a public key, which is not a secret
+            throw new UnsupportedJwtException("JWT signed with " + algorithm + " while asymmetric keys are configured");
+        }
+        PublicKey key = header.getKeyId() != null ? verificationKeys.get(header.getKeyId()) : null;
+        if (key == null) {
+            throw new SignatureException("Unknown JWT key id: " + header.getKeyId());
+        }
+        return key;
+    }
+}
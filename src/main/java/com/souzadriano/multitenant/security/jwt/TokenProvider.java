@@ -1,30 +1,42 @@
 package com.souzadriano.multitenant.security.jwt;
 
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Date;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
+import javax.crypto.spec.SecretKeySpec;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
+import com.souzadriano.multitenant.config.ApplicationProperties;
+import com.souzadriano.multitenant.security.BoundedCache;
+import com.souzadriano.multitenant.security.GrantedAuthorityRegistry;
 import com.souzadriano.multitenant.security.UserDetails;
 
 import io.github.jhipster.config.JHipsterProperties;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.SignatureException;
 import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.impl.TextCodec;
 
 @Component
 public class TokenProvider {
@@ -34,7 +46,33 @@ public class TokenProvider {
     private static final String AUTHORITIES_KEY = "auth";
     private static final String TENANT_ID = "tenant";
 
-    private String secretKey;
+    /**
+     * Upper bound of the authentication cache, the least recently used tokens are dropped when it is reached.
+     */
+    private static final int MAX_CACHED_AUTHENTICATIONS = 10000;
+
+    /**
+     * Claims of already verified tokens, keyed by the SHA-256 digest of the token, until the token expires.
+     */
+    private final BoundedCache<String, CachedAuthentication> authenticationCache =
+        new BoundedCache<>(MAX_CACHED_AUTHENTICATIONS);
+
+    /**
+     * Signs new tokens: the HS512 key derived from the secret, or the private key of the key store.
+     */
+    private Key signingKey;
+
+    private SignatureAlgorithm signatureAlgorithm;
+
+    /**
+     * Key id written in the header of new tokens, only set with a key store.
+     */
+    private String signingKeyId;
+
+    /**
+     * Built once, the parser keeps no state between parses and is shared by all requests.
+     */
+    private JwtParser jwtParser;
 
     private long tokenValidityInMilliseconds;
 
@@ -42,14 +80,36 @@ public class TokenProvider {
 
     private final JHipsterProperties jHipsterProperties;
 
-    public TokenProvider(JHipsterProperties jHipsterProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    private final GrantedAuthorityRegistry grantedAuthorityRegistry;
+
+    public TokenProvider(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties,
+            GrantedAuthorityRegistry grantedAuthorityRegistry) {
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
+        this.grantedAuthorityRegistry = grantedAuthorityRegistry;
     }
 
     @PostConstruct
     public void init() {
-        this.secretKey =
-            jHipsterProperties.getSecurity().getAuthentication().getJwt().getSecret();
+        ApplicationProperties.Jwt jwt = applicationProperties.getJwt();
+        if (StringUtils.hasText(jwt.getKeyStore())) {
+            KeyStoreSigningKeys keys = KeyStoreSigningKeys.load(jwt);
+            this.signingKey = keys.getSigningKey();
+            this.signatureAlgorithm = keys.getSignatureAlgorithm();
+            this.signingKeyId = keys.getSigningKeyId();
+            this.jwtParser = Jwts.parser().setSigningKeyResolver(keys);
+            log.info("Verifying JWT with the keys of {}{}", jwt.getKeyStore(),
+                keys.canSign() ? ", signing with " + signingKeyId + " (" + signatureAlgorithm + ")" : "");
+        } else {
+            // Same key derivation as Jwts.parser().setSigningKey(String), done once
+            byte[] secret = TextCodec.BASE64.decode(jHipsterProperties.getSecurity().getAuthentication().getJwt().getSecret());
+            this.signatureAlgorithm = SignatureAlgorithm.HS512;
+            this.signingKey = new SecretKeySpec(secret, signatureAlgorithm.getJcaName());
+            this.signingKeyId = null;
+            this.jwtParser = Jwts.parser().setSigningKey(signingKey);
+        }
 
         this.tokenValidityInMilliseconds =
             1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSeconds();
@@ -76,36 +136,91 @@ public class TokenProvider {
             validity = new Date(now + this.tokenValidityInMilliseconds);
         }
 
-        return Jwts.builder()
+        if (signingKey == null) {
+            throw new IllegalStateException("No JWT signing key configured, tokens can only be verified");
+        }
+        JwtBuilder builder = Jwts.builder();
+        if (signingKeyId != null) {
+            builder.setHeaderParam(JwsHeader.KEY_ID, signingKeyId);
+        }
+        return builder
             .setSubject(authentication.getName())
             .claim(AUTHORITIES_KEY, authorities)
             .claim(TENANT_ID, tenantId)
-            .signWith(SignatureAlgorithm.HS512, secretKey)
+            .signWith(signatureAlgorithm, signingKey)
             .setExpiration(validity)
             .compact();
     }
 
     public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parser()
-            .setSigningKey(secretKey)
+        Claims claims = jwtParser
             .parseClaimsJws(token)
             .getBody();
+        return createAuthentication(claims, token);
+    }
 
-        Collection<? extends GrantedAuthority> authorities =
-            Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+    /**
+     * Validates the token and returns its authentication in a single pass. The signature is only verified the
+     * first time a token is seen, its subject, tenant and authorities are then cached until the token expires.
+     * Each call gets its own authentication, callers may change it.
+     *
+     * @return the authentication, or null if the token is not valid
+     */
+    public Authentication getValidAuthentication(String token) {
+        String key = digest(token);
+        CachedAuthentication cached = authenticationCache.get(key);
+        if (cached == null) {
+            Claims claims = parseValidClaims(token);
+            if (claims == null) {
+                return null;
+            }
+            if (claims.getExpiration() == null) {
+                return createAuthentication(claims, token);
+            }
+            cached = new CachedAuthentication(claims.getSubject(), getTenantId(claims), getAuthorities(claims));
+            authenticationCache.put(key, cached, claims.getExpiration().getTime());
+        }
+        return createAuthentication(cached.subject, cached.tenantId, cached.authorities, token);
+    }
 
-        String tenantId = claims.get(TENANT_ID) != null ? claims.get(TENANT_ID).toString() : null;
-		UserDetails principal = new UserDetails(claims.getSubject(), "", authorities, tenantId);
+    private String digest(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private Authentication createAuthentication(Claims claims, String token) {
+        return createAuthentication(claims.getSubject(), getTenantId(claims), getAuthorities(claims), token);
+    }
+
+    private Authentication createAuthentication(String subject, String tenantId,
+            Collection<? extends GrantedAuthority> authorities, String token) {
+		UserDetails principal = new UserDetails(subject, "", authorities, tenantId);
 
         return new UsernamePasswordAuthenticationToken(principal, token, authorities);
     }
 
+    private Collection<? extends GrantedAuthority> getAuthorities(Claims claims) {
+        return grantedAuthorityRegistry.getAll(claims.get(AUTHORITIES_KEY).toString());
+    }
+
+    private String getTenantId(Claims claims) {
+        return claims.get(TENANT_ID) != null ? claims.get(TENANT_ID).toString() : null;
+    }
+
     public boolean validateToken(String authToken) {
+        return parseValidClaims(authToken) != null;
+    }
+
+    /**
+     * @return the claims of the token, or null if the token is not valid
+     */
+    private Claims parseValidClaims(String authToken) {
         try {
-            Jwts.parser().setSigningKey(secretKey).parseClaimsJws(authToken);
-            return true;
+            return jwtParser.parseClaimsJws(authToken).getBody();
         } catch (SignatureException e) {
             log.info("Invalid JWT signature.");
             log.trace("Invalid JWT signature trace: {}", e);
@@ -122,6 +237,21 @@ public class TokenProvider {
             log.info("JWT token compact of handler are invalid.");
             log.trace("JWT token compact of handler are invalid trace: {}", e);
         }
-        return false;
+        return null;
+    }
+
+    private static class CachedAuthentication {
+
+        private final String subject;
+
+        private final String tenantId;
+
+        private final Collection<? extends GrantedAuthority> authorities;
+
+        CachedAuthentication(String subject, String tenantId, Collection<? extends GrantedAuthority> authorities) {
+            this.subject = subject;
+            this.tenantId = tenantId;
+            this.authorities = authorities;
+        }
     }
 }
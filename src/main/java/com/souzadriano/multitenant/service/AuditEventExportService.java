@@ -0,0 +1,166 @@
+package com.souzadriano.multitenant.service;
+
+import com.souzadriano.multitenant.config.ApplicationProperties;
+import com.souzadriano.multitenant.config.multitenant.CurrentTenantIdentifierResolverImpl;
+import com.souzadriano.multitenant.config.multitenant.MultiTenantDataSourceLookup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Service for exporting the audit events of the current tenant.
+ * <p>
+ * The events and their data are read with a single forward-only query, application.audit.export-fetch-size rows
+ * at a time, and each event is handed over as soon as its last row has been read, so that the memory used by
+ * an export does not depend on the number of events. Events without a date or a type, which the columns allow
+ * but an AuditEvent cannot hold, are left out.
+ */
+@Service
+public class AuditEventExportService {
+
+    private static final String SELECT_EVENTS = "SELECT e.event_id, e.event_date, e.principal, e.event_type, d.name, d.value"
+        + " FROM jhi_persistent_audit_event e LEFT JOIN jhi_persistent_audit_evt_data d ON d.event_id = e.event_id";
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventExportService.class);
+
+    private final ApplicationProperties.Audit properties;
+
+    private final MultiTenantDataSourceLookup dataSourceLookup;
+
+    private final CurrentTenantIdentifierResolverImpl tenantResolver;
+
+    public AuditEventExportService(ApplicationProperties applicationProperties,
+        MultiTenantDataSourceLookup dataSourceLookup, CurrentTenantIdentifierResolverImpl tenantResolver) {
+        this.properties = applicationProperties.getAudit();
+        this.dataSourceLookup = dataSourceLookup;
+        this.tenantResolver = tenantResolver;
+    }
+
+    /**
+     * Reads the matching events in the order they were saved, and hands them over one at a time. The pool of the
+     * tenant is closed afterwards when it was opened for the export and has not been used since.
+     *
+     * @param fromDate the start of the time period, or null
+     * @param toDate the end of the time period, exclusive, or null
+     * @param principal the principal of the events, or null for every principal
+     * @param type the type of the events, or null for every type
+     * @param consumer called with each event, its exceptions stop the export
+     * @return the number of exported events
+     */
+    public long export(Instant fromDate, Instant toDate, String principal, String type, Consumer<AuditEvent> consumer) {
+        String tenantId = tenantResolver.resolveCurrentTenantIdentifier();
+        StringBuilder sql = new StringBuilder(SELECT_EVENTS);
+        List<Object> args = new ArrayList<>();
+        String separator = " WHERE ";
+        if (fromDate != null) {
+            sql.append(separator).append("e.event_date >= ?");
+            args.add(Timestamp.from(fromDate));
+            separator = " AND ";
+        }
+        if (toDate != null) {
+            sql.append(separator).append("e.event_date < ?");
+            args.add(Timestamp.from(toDate));
+            separator = " AND ";
+        }
+        if (principal != null) {
+            sql.append(separator).append("e.principal = ?");
+            args.add(principal);
+            separator = " AND ";
+        }
+        if (type != null) {
+            sql.append(separator).append("e.event_type = ?");
+            args.add(type);
+        }
+        sql.append(" ORDER BY e.event_id");
+
+        boolean open = dataSourceLookup.isDataSourceOpen(tenantId);
+        DataSource dataSource = dataSourceLookup.getDataSource(tenantId);
+        long handedOutAt = System.currentTimeMillis();
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.setFetchSize(Math.max(1, properties.getExportFetchSize()));
+            EventReader reader = new EventReader(consumer);
+            jdbcTemplate.query(sql.toString(), args.toArray(), reader);
+            reader.emit();
+            if (reader.skipped > 0) {
+                log.warn("Left {} audit events without a date or a type out of the export of tenant {}", reader.skipped,
+                    tenantId);
+            }
+            log.debug("Exported {} audit events of tenant {}", reader.count, tenantId);
+            return reader.count;
+        } finally {
+            if (!open) {
+                dataSourceLookup.releaseDataSource(tenantId, handedOutAt);
+            }
+        }
+    }
+
+    /**
+     * Gathers the rows of each event, which follow each other as they are ordered by event id.
+     */
+    private static class EventReader implements RowCallbackHandler {
+
+        private final Consumer<AuditEvent> consumer;
+
+        private long eventId;
+
+        private Date timestamp;
+
+        private String principal;
+
+        private String type;
+
+        private Map<String, Object> data;
+
+        private long count;
+
+        private long skipped;
+
+        EventReader(Consumer<AuditEvent> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet resultSet) throws SQLException {
+            long id = resultSet.getLong(1);
+            if (data == null || id != eventId) {
+                emit();
+                eventId = id;
+                Timestamp eventDate = resultSet.getTimestamp(2);
+                timestamp = eventDate != null ? new Date(eventDate.getTime()) : null;
+                principal = resultSet.getString(3);
+                type = resultSet.getString(4);
+                data = new HashMap<>();
+            }
+            String name = resultSet.getString(5);
+            if (name != null) {
+                data.put(name, resultSet.getString(6));
+            }
+        }
+
+        void emit() {
+            if (data == null) {
+                return;
+            }
+            if (timestamp != null && type != null) {
+                consumer.accept(new AuditEvent(timestamp, principal, type, data));
+                count++;
+            } else {
+                skipped++;
+            }
+            data = null;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.souzadriano.multitenant.service;
+
+import com.souzadriano.multitenant.config.ApplicationProperties;
+import com.souzadriano.multitenant.config.multitenant.MultiTenantDataSourceLookup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service for deleting the audit events older than the retention of their tenant, in every tenant database.
+ * <p>
+ * The expired events are removed in chunks of application.audit.retention-chunk-size, each one in its own short
+ * transaction, so that the locks and the transaction log of a purge stay small. When application.audit.archive is
+ * set, each chunk is first copied to the archive tables with set-based INSERT ... SELECT statements. The tenant
+ * databases are purged on their own thread pool, bounded by application.audit.retention-parallelism.
+ * <p>
+ * The nightly purge runs on a single node, the one that takes the audit-retention lock of mt_scheduled_lock in the
+ * default database. The pools opened only for the purge of idle tenants are closed right after it, so that they
+ * do not hold connections of the budget until they are evicted.
+ */
+@Service
+public class AuditEventRetentionService {
+
+    private static final String DEFAULT_TENANTID = "default";
+
+    private static final String LOCK_NAME = "audit-retention";
+
+    /**
+     * Held until shortly before the next night, so that the nodes whose clock is late do not purge again.
+     */
+    private static final long LOCK_HOURS = 23;
+
+    private static final String ACQUIRE_LOCK =
+        "UPDATE mt_scheduled_lock SET locked_until = ?, locked_by = ? WHERE name = ? AND locked_until <= ?";
+
+    private static final String SELECT_TENANT_RETENTIONS = "SELECT name, audit_retention_days FROM mt_datasource_config";
+
+    /**
+     * Reads the ids of the next chunk after the last id of the previous one, so that each chunk only reads its own
+     * rows instead of the whole remaining expired set.
+     */
+    private static final String SELECT_EXPIRED_IDS =
+        "SELECT event_id FROM jhi_persistent_audit_event WHERE event_date < ? AND event_id > ? ORDER BY event_id";
+
+    private static final String EXPIRED_CHUNK = "event_date < ? AND event_id > ? AND event_id <= ?";
+
+    private static final String EXPIRED_CHUNK_IDS = "SELECT event_id FROM jhi_persistent_audit_event WHERE " + EXPIRED_CHUNK;
+
+    private static final String ARCHIVE_EVENTS =
+        "INSERT INTO jhi_persistent_audit_event_archive (event_id, principal, event_date, event_type)"
+            + " SELECT event_id, principal, event_date, event_type FROM jhi_persistent_audit_event WHERE " + EXPIRED_CHUNK;
+
+    private static final String ARCHIVE_EVENT_DATA =
+        "INSERT INTO jhi_persistent_audit_evt_data_archive (event_id, name, value)"
+            + " SELECT event_id, name, value FROM jhi_persistent_audit_evt_data WHERE event_id IN (" + EXPIRED_CHUNK_IDS + ")";
+
+    private static final String DELETE_EVENT_DATA =
+        "DELETE FROM jhi_persistent_audit_evt_data WHERE event_id IN (" + EXPIRED_CHUNK_IDS + ")";
+
+    private static final String DELETE_EVENTS = "DELETE FROM jhi_persistent_audit_event WHERE " + EXPIRED_CHUNK;
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventRetentionService.class);
+
+    private final ApplicationProperties.Audit properties;
+
+    private final MultiTenantDataSourceLookup dataSourceLookup;
+
+    private final JdbcTemplate defaultJdbcTemplate;
+
+    private final ExecutorService executor;
+
+    public AuditEventRetentionService(ApplicationProperties applicationProperties,
+        MultiTenantDataSourceLookup dataSourceLookup, DataSource defaultDataSource) {
+        this.properties = applicationProperties.getAudit();
+        this.dataSourceLookup = dataSourceLookup;
+        this.defaultJdbcTemplate = new JdbcTemplate(defaultDataSource);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getRetentionParallelism()), runnable -> {
+            Thread thread = new Thread(runnable, "audit-retention-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Expired audit events are removed every night, by a single node.
+     * <p>
+     * This is scheduled to get fired everyday, at 02:00 (am).
+     */
+    @Scheduled(cron = "0 0 2 * * ?")
+    public void removeExpiredEvents() throws InterruptedException {
+        if (!acquireLock()) {
+            log.debug("Expired audit events are being removed by another node");
+            return;
+        }
+        purgeAll();
+    }
+
+    /**
+     * @return whether this node got the lock, which nobody else can take before it expires
+     */
+    boolean acquireLock() {
+        Instant now = Instant.now();
+        return defaultJdbcTemplate.update(ACQUIRE_LOCK, Timestamp.from(now.plus(LOCK_HOURS, ChronoUnit.HOURS)),
+            ManagementFactory.getRuntimeMXBean().getName(), LOCK_NAME, Timestamp.from(now)) > 0;
+    }
+
+    /**
+     * Purges the tenant databases, and waits until they are all done.
+     *
+     * @return the number of events removed from each tenant database, tenants whose purge failed are left out
+     */
+    public Map<String, Long> purgeAll() throws InterruptedException {
+        Map<String, Future<Long>> purges = new LinkedHashMap<>();
+        getRetentionDays().forEach((tenantId, retentionDays) -> {
+            if (retentionDays > 0) {
+                purges.put(tenantId, executor.submit(() -> purge(tenantId, retentionDays)));
+            }
+        });
+        Map<String, Long> purged = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<Long>> purge : purges.entrySet()) {
+            try {
+                purged.put(purge.getKey(), purge.getValue().get());
+            } catch (ExecutionException e) {
+                log.error("Could not remove the expired audit events of tenant: " + purge.getKey(), e.getCause());
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * Removes the events of the tenant older than the given number of days. The pool of the tenant is closed
+     * afterwards when it was opened for the purge and has not been used since.
+     *
+     * @return the number of events removed
+     */
+    public long purge(String tenantId, int retentionDays) {
+        boolean open = dataSourceLookup.isDataSourceOpen(tenantId);
+        DataSource dataSource = dataSourceLookup.getDataSource(tenantId);
+        long handedOutAt = System.currentTimeMillis();
+        try {
+            return purge(tenantId, retentionDays, dataSource);
+        } finally {
+            if (!open) {
+                dataSourceLookup.releaseDataSource(tenantId, handedOutAt);
+            }
+        }
+    }
+
+    private long purge(String tenantId, int retentionDays, DataSource dataSource) {
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(retentionDays, ChronoUnit.DAYS));
+        int chunkSize = Math.max(1, properties.getRetentionChunkSize());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setMaxRows(chunkSize);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        long purged = 0;
+        long previousLastId = 0;
+        List<Long> ids;
+        do {
+            ids = jdbcTemplate.queryForList(SELECT_EXPIRED_IDS, Long.class, cutoff, previousLastId);
+            if (ids.isEmpty()) {
+                break;
+            }
+            long firstId = previousLastId;
+            long lastId = ids.get(ids.size() - 1);
+            purged += transactionTemplate.execute(status -> purgeChunk(jdbcTemplate, cutoff, firstId, lastId));
+            previousLastId = lastId;
+        } while (ids.size() == chunkSize);
+        log.info("Removed {} audit events older than {} days from tenant {}", purged, retentionDays, tenantId);
+        return purged;
+    }
+
+    /**
+     * Removes the expired events with an id after the previous chunk and up to the given id.
+     */
+    private int purgeChunk(JdbcTemplate jdbcTemplate, Timestamp cutoff, long previousLastId, long lastId) {
+        if (properties.isArchive()) {
+            jdbcTemplate.update(ARCHIVE_EVENTS, cutoff, previousLastId, lastId);
+            jdbcTemplate.update(ARCHIVE_EVENT_DATA, cutoff, previousLastId, lastId);
+        }
+        jdbcTemplate.update(DELETE_EVENT_DATA, cutoff, previousLastId, lastId);
+        return jdbcTemplate.update(DELETE_EVENTS, cutoff, previousLastId, lastId);
+    }
+
+    /**
+     * The retention of the default tenant and of each tenant of mt_datasource_config, in days.
+     */
+    private Map<String, Integer> getRetentionDays() {
+        Map<String, Integer> retentionDays = new LinkedHashMap<>();
+        retentionDays.put(DEFAULT_TENANTID, properties.getRetentionDays());
+        defaultJdbcTemplate.query(SELECT_TENANT_RETENTIONS, resultSet -> {
+            String tenantId = resultSet.getString(1);
+            int days = resultSet.getInt(2);
+            if (!DEFAULT_TENANTID.equals(tenantId)) {
+                retentionDays.put(tenantId, resultSet.wasNull() ? properties.getRetentionDays() : days);
+            }
+        });
+        return retentionDays;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
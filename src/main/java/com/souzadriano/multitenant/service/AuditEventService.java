@@ -1,20 +1,28 @@
 package com.souzadriano.multitenant.service;
 
 import com.souzadriano.multitenant.config.audit.AuditEventConverter;
+import com.souzadriano.multitenant.domain.PersistentAuditEvent;
 import com.souzadriano.multitenant.repository.PersistenceAuditEventRepository;
+import com.souzadriano.multitenant.service.util.KeysetSlice;
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Service for managing audit events.
  * <p>
  * This is the default implementation to support SpringBoot Actuator AuditEventRepository
+ * <p>
+ * A page of events is read with a constant number of queries: one for the events, one for the data of all the
+ * events of the page, and for the paged listings one count query, which does not join the data.
  */
 @Service
 @Transactional
@@ -33,17 +41,70 @@ public class AuditEventService {
     }
 
     public Page<AuditEvent> findAll(Pageable pageable) {
-        return persistenceAuditEventRepository.findAll(pageable)
+        return withData(persistenceAuditEventRepository.findAll(pageable))
             .map(auditEventConverter::convertToAuditEvent);
     }
 
     public Page<AuditEvent> findByDates(Instant fromDate, Instant toDate, Pageable pageable) {
-        return persistenceAuditEventRepository.findAllByAuditEventDateBetween(fromDate, toDate, pageable)
+        return withData(persistenceAuditEventRepository.findAllByAuditEventDateBetween(fromDate, toDate, pageable))
+            .map(auditEventConverter::convertToAuditEvent);
+    }
+
+    /**
+     * Get the audit events preceding the given id, newest first, without counting them.
+     *
+     * @param id the id of the last event of the previous page, or null for the first page
+     * @param size the size of the page
+     * @return the page, with the id of its last event as next key
+     */
+    public KeysetSlice<AuditEvent> findAllBefore(Long id, int size) {
+        return KeysetSlice.of(withData(persistenceAuditEventRepository.findAllByIdLessThanOrderByIdDesc(
+            id != null ? id : Long.MAX_VALUE, new PageRequest(0, size + 1))), size, PersistentAuditEvent::getId)
             .map(auditEventConverter::convertToAuditEvent);
     }
 
+    /**
+     * Get the audit events between the dates preceding the given id, newest first, without counting them.
+     *
+     * @param fromDate the start of the time period
+     * @param toDate the end of the time period
+     * @param id the id of the last event of the previous page, or null for the first page
+     * @param size the size of the page
+     * @return the page, with the id of its last event as next key
+     */
+    public KeysetSlice<AuditEvent> findByDatesBefore(Instant fromDate, Instant toDate, Long id, int size) {
+        return KeysetSlice.of(withData(persistenceAuditEventRepository.findAllByAuditEventDateBetweenAndIdLessThanOrderByIdDesc(
+            fromDate, toDate, id != null ? id : Long.MAX_VALUE, new PageRequest(0, size + 1))), size, PersistentAuditEvent::getId)
+            .map(auditEventConverter::convertToAuditEvent);
+    }
+
+    public long count() {
+        return persistenceAuditEventRepository.count();
+    }
+
+    public long countByDates(Instant fromDate, Instant toDate) {
+        return persistenceAuditEventRepository.countByAuditEventDateBetween(fromDate, toDate);
+    }
+
     public Optional<AuditEvent> find(Long id) {
         return Optional.ofNullable(persistenceAuditEventRepository.findOne(id)).map
             (auditEventConverter::convertToAuditEvent);
     }
+
+    /**
+     * Initializes the data of the events with one query, instead of one query per event when they are converted.
+     */
+    private List<PersistentAuditEvent> withData(List<PersistentAuditEvent> events) {
+        if (!events.isEmpty()) {
+            persistenceAuditEventRepository.findAllWithDataByIdIn(events.stream()
+                .map(PersistentAuditEvent::getId)
+                .collect(Collectors.toList()));
+        }
+        return events;
+    }
+
+    private Page<PersistentAuditEvent> withData(Page<PersistentAuditEvent> events) {
+        withData(events.getContent());
+        return events;
+    }
 }
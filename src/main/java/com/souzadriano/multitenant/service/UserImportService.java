@@ -0,0 +1,351 @@
+package com.souzadriano.multitenant.service;
+
+import com.souzadriano.multitenant.domain.Authority;
+import com.souzadriano.multitenant.domain.User;
+import com.souzadriano.multitenant.repository.AuthorityRepository;
+import com.souzadriano.multitenant.repository.UserRepository;
+import com.souzadriano.multitenant.security.BoundedPasswordEncoder;
+import com.souzadriano.multitenant.security.PasswordEncoderBusyException;
+import com.souzadriano.multitenant.service.dto.UserImportDTO;
+import com.souzadriano.multitenant.service.dto.UserImportResultDTO;
+import com.souzadriano.multitenant.service.util.RandomUtil;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service class for importing users in bulk into the database of the current tenant.
+ * <p>
+ * The rows are read one line at a time, and handled in chunks: the logins and emails of a chunk are checked
+ * with a single query, its passwords are hashed in parallel on the password encoder pool, and its users are
+ * saved in one transaction, which Hibernate sends as JDBC batches. When a login or email was taken meanwhile,
+ * the chunk is saved again one user at a time, so that only the conflicting rows fail. The outcome of each row
+ * is reported as soon as its chunk is done.
+ */
+@Service
+public class UserImportService {
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    static final int CHUNK_SIZE = 100;
+
+    private static final String AUTHORITIES_SEPARATOR = "\\|";
+
+    private final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    private final UserRepository userRepository;
+
+    private final AuthorityRepository authorityRepository;
+
+    private final BoundedPasswordEncoder passwordEncoder;
+
+    private final MailService mailService;
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectReader rowReader;
+
+    private final Validator validator;
+
+    public UserImportService(UserRepository userRepository, AuthorityRepository authorityRepository,
+        BoundedPasswordEncoder passwordEncoder, MailService mailService, ObjectMapper objectMapper, Validator validator) {
+        this.userRepository = userRepository;
+        this.authorityRepository = authorityRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.mailService = mailService;
+        this.objectMapper = objectMapper;
+        this.rowReader = objectMapper.readerFor(UserImportDTO.class);
+        this.validator = validator;
+    }
+
+    /**
+     * Imports the users read from NDJSON, one user per line, or from CSV, with a header line naming the
+     * properties of each column and the authorities of a user separated by "|".
+     * <p>
+     * Users with a password are created with it, the others get a reset key and a creation email, as in
+     * {@link UserService#createUser(com.souzadriano.multitenant.service.dto.UserDTO)}. When the mail executor
+     * is full, the user is still created and its row reports the "mail" error.
+     *
+     * @param reader the rows to import
+     * @param format the format of the rows
+     * @param listener called with the outcome of the rows of each chunk, in order
+     */
+    public void importUsers(Reader reader, Format format, Consumer<List<UserImportResultDTO>> listener) throws IOException {
+        Map<String, Authority> authorities = authorityRepository.findAll().stream()
+            .collect(Collectors.toMap(Authority::getName, Function.identity()));
+        BufferedReader lines = new BufferedReader(reader);
+        long lineNumber = 0;
+        String[] csvHeader = null;
+        if (format == Format.CSV) {
+            String header = lines.readLine();
+            lineNumber++;
+            if (header == null) {
+                return;
+            }
+            csvHeader = parseCsvLine(header).toArray(new String[0]);
+        }
+        List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+        List<UserImportResultDTO> results = new ArrayList<>();
+        long created = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                chunk.add(new Row(lineNumber, csvHeader != null ? readCsvRow(csvHeader, line) : rowReader.readValue(line)));
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                results.add(UserImportResultDTO.failed(lineNumber, null, "parse", e.getMessage()));
+            }
+            if (chunk.size() == CHUNK_SIZE) {
+                created += importChunk(chunk, authorities, results);
+                listener.accept(results);
+                chunk.clear();
+                results = new ArrayList<>();
+            }
+        }
+        if (!chunk.isEmpty() || !results.isEmpty()) {
+            created += importChunk(chunk, authorities, results);
+            listener.accept(results);
+        }
+        log.debug("Imported {} users", created);
+    }
+
+    private int importChunk(List<Row> chunk, Map<String, Authority> authorities, List<UserImportResultDTO> results) {
+        List<Row> accepted = validate(chunk, authorities);
+        if (!accepted.isEmpty()) {
+            try {
+                List<User> users = toUsers(accepted, authorities);
+                save(accepted, users);
+                for (int i = 0; i < accepted.size(); i++) {
+                    if (accepted.get(i).error == null && users.get(i).getResetKey() != null) {
+                        sendCreationEmail(accepted.get(i), users.get(i));
+                    }
+                }
+            } catch (PasswordEncoderBusyException e) {
+                accepted.forEach(row -> row.fail("busy", "The password encoder is busy, retry the row later"));
+            }
+        }
+        chunk.stream()
+            .map(Row::result)
+            .forEach(results::add);
+        results.sort(Comparator.comparingLong(UserImportResultDTO::getLine));
+        return (int) accepted.stream().filter(row -> row.error == null).count();
+    }
+
+    /**
+     * Saves the users of the rows in one transaction, or one at a time when a login or email was taken since
+     * the chunk was validated.
+     */
+    private void save(List<Row> rows, List<User> users) {
+        try {
+            userRepository.save(users);
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Could not save the chunk, saving its users one at a time: {}", e.getMessage());
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                // The id and the collection of the rolled back transaction
+                user.setId(null);
+                user.setAuthorities(new HashSet<>(user.getAuthorities()));
+                try {
+                    userRepository.save(user);
+                } catch (DataIntegrityViolationException conflict) {
+                    rows.get(i).fail("conflict", "The login or email was taken during the import");
+                }
+            }
+        }
+    }
+
+    private void sendCreationEmail(Row row, User user) {
+        try {
+            mailService.sendCreationEmail(user);
+        } catch (TaskRejectedException e) {
+            log.warn("Could not queue the creation email of {}: {}", user.getLogin(), e.getMessage());
+            row.warning = "The creation email could not be sent, request a password reset for the user";
+        }
+    }
+
+    /**
+     * Rejects the invalid rows of the chunk, and the ones whose login or email is taken in the database or by
+     * a previous row of the chunk.
+     */
+    private List<Row> validate(List<Row> chunk, Map<String, Authority> authorities) {
+        List<Row> valid = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            Set<ConstraintViolation<UserImportDTO>> violations = validator.validate(row.user);
+            if (row.user.getId() != null) {
+                row.fail("idexists", "A new user cannot already have an ID");
+            } else if (!violations.isEmpty()) {
+                ConstraintViolation<UserImportDTO> violation = violations.iterator().next();
+                row.fail("invalid", violation.getPropertyPath() + " " + violation.getMessage());
+            } else if (row.user.getAuthorities() != null && !authorities.keySet().containsAll(row.user.getAuthorities())) {
+                row.fail("invalid", "Unknown authority");
+            } else {
+                valid.add(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return valid;
+        }
+        Set<String> logins = valid.stream().map(Row::login).collect(Collectors.toSet());
+        Set<String> emails = valid.stream().map(row -> row.user.getEmail()).filter(Objects::nonNull).collect(Collectors.toSet());
+        List<User> existingUsers = emails.isEmpty()
+            ? userRepository.findAllByLoginIn(logins)
+            : userRepository.findAllByLoginInOrEmailIn(logins, emails);
+        Set<String> takenLogins = existingUsers.stream().map(User::getLogin).collect(Collectors.toSet());
+        Set<String> takenEmails = existingUsers.stream().map(User::getEmail).filter(Objects::nonNull).collect(Collectors.toSet());
+        List<Row> accepted = new ArrayList<>(valid.size());
+        for (Row row : valid) {
+            if (!takenLogins.add(row.login())) {
+                row.fail("userexists", "Login already in use");
+            } else if (row.user.getEmail() != null && !takenEmails.add(row.user.getEmail())) {
+                row.fail("emailexists", "Email already in use");
+            } else {
+                accepted.add(row);
+            }
+        }
+        return accepted;
+    }
+
+    private List<User> toUsers(List<Row> rows, Map<String, Authority> authorities) {
+        List<String> passwords = rows.stream()
+            .map(row -> row.user.getPassword() != null ? row.user.getPassword() : RandomUtil.generatePassword())
+            .collect(Collectors.toList());
+        List<String> encryptedPasswords = passwordEncoder.encodeAll(passwords);
+        List<User> users = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            UserImportDTO userDTO = rows.get(i).user;
+            User user = new User();
+            user.setLogin(userDTO.getLogin());
+            user.setFirstName(userDTO.getFirstName());
+            user.setLastName(userDTO.getLastName());
+            user.setEmail(userDTO.getEmail());
+            user.setImageUrl(userDTO.getImageUrl());
+            user.setLangKey(userDTO.getLangKey() == null ? "pt-br" : userDTO.getLangKey());
+            if (userDTO.getAuthorities() != null) {
+                user.setAuthorities(userDTO.getAuthorities().stream()
+                    .map(authorities::get)
+                    .collect(Collectors.toSet()));
+            }
+            user.setPassword(encryptedPasswords.get(i));
+            if (userDTO.getPassword() == null) {
+                user.setResetKey(RandomUtil.generateResetKey());
+                user.setResetDate(Instant.now());
+            }
+            user.setActivated(true);
+            users.add(user);
+        }
+        return users;
+    }
+
+    private UserImportDTO readCsvRow(String[] header, String line) {
+        List<String> values = parseCsvLine(line);
+        if (values.size() > header.length) {
+            throw new IllegalArgumentException("Expected at most " + header.length + " columns, found " + values.size());
+        }
+        Map<String, Object> properties = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i);
+            if (!value.isEmpty()) {
+                properties.put(header[i], "authorities".equals(header[i])
+                    ? Arrays.asList(value.split(AUTHORITIES_SEPARATOR)) : value);
+            }
+        }
+        return objectMapper.convertValue(properties, UserImportDTO.class);
+    }
+
+    /**
+     * Splits a line of comma-separated values, where a value may be quoted with double quotes, and a double
+     * quote within a quoted value is doubled.
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append(c);
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted value");
+        }
+        values.add(value.toString().trim());
+        return values;
+    }
+
+    private static class Row {
+
+        private final long line;
+
+        private final UserImportDTO user;
+
+        private String error;
+
+        private String message;
+
+        /**
+         * Set when the user was created without its creation email.
+         */
+        private String warning;
+
+        Row(long line, UserImportDTO user) {
+            this.line = line;
+            this.user = user;
+        }
+
+        String login() {
+            return user.getLogin().toLowerCase(Locale.ENGLISH);
+        }
+
+        void fail(String error, String message) {
+            this.error = error;
+            this.message = message;
+        }
+
+        UserImportResultDTO result() {
+            if (error != null) {
+                return UserImportResultDTO.failed(line, user.getLogin(), error, message);
+            }
+            return warning == null
+                ? UserImportResultDTO.created(line, login())
+                : UserImportResultDTO.created(line, login(), "mail", warning);
+        }
+    }
+}
@@ -7,12 +7,15 @@ import com.souzadriano.multitenant.config.Constants;
 import com.souzadriano.multitenant.repository.UserRepository;
 import com.souzadriano.multitenant.security.AuthoritiesConstants;
 import com.souzadriano.multitenant.security.SecurityUtils;
+import com.souzadriano.multitenant.security.UserDetailsService;
+import com.souzadriano.multitenant.service.util.KeysetSlice;
 import com.souzadriano.multitenant.service.util.RandomUtil;
 import com.souzadriano.multitenant.service.dto.UserDTO;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -39,10 +42,14 @@ public class UserService {
 
     private final AuthorityRepository authorityRepository;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository) {
+    private final UserDetailsService userDetailsService;
+
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository,
+        UserDetailsService userDetailsService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authorityRepository = authorityRepository;
+        this.userDetailsService = userDetailsService;
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -52,6 +59,7 @@ public class UserService {
                 // activate given user for the registration key.
                 user.setActivated(true);
                 user.setActivationKey(null);
+                userDetailsService.evict(user.getLogin());
                 log.debug("Activated user: {}", user);
                 return user;
             });
@@ -66,6 +74,7 @@ public class UserService {
                 user.setPassword(passwordEncoder.encode(newPassword));
                 user.setResetKey(null);
                 user.setResetDate(null);
+                userDetailsService.evict(user.getLogin());
                 return user;
            });
     }
@@ -165,6 +174,7 @@ public class UserService {
         return Optional.of(userRepository
             .findOne(userDTO.getId()))
             .map(user -> {
+                userDetailsService.evict(user.getLogin());
                 user.setLogin(userDTO.getLogin());
                 user.setFirstName(userDTO.getFirstName());
                 user.setLastName(userDTO.getLastName());
@@ -177,6 +187,7 @@ public class UserService {
                 userDTO.getAuthorities().stream()
                     .map(authorityRepository::findOne)
                     .forEach(managedAuthorities::add);
+                userDetailsService.evict(user.getLogin());
                 log.debug("Changed Information for User: {}", user);
                 return user;
             })
@@ -186,6 +197,7 @@ public class UserService {
     public void deleteUser(String login) {
         userRepository.findOneByLogin(login).ifPresent(user -> {
             userRepository.delete(user);
+            userDetailsService.evict(user.getLogin());
             log.debug("Deleted User: {}", user);
         });
     }
@@ -194,13 +206,64 @@ public class UserService {
         userRepository.findOneByLogin(SecurityUtils.getCurrentUserLogin()).ifPresent(user -> {
             String encryptedPassword = passwordEncoder.encode(password);
             user.setPassword(encryptedPassword);
+            userDetailsService.evict(user.getLogin());
             log.debug("Changed password for User: {}", user);
         });
     }
 
     @Transactional(readOnly = true)
     public Page<UserDTO> getAllManagedUsers(Pageable pageable) {
-        return userRepository.findAllByLoginNot(pageable, Constants.ANONYMOUS_USER).map(UserDTO::new);
+        Page<UserDTO> page = userRepository.findAllDTOByLoginNot(Constants.ANONYMOUS_USER, pageable);
+        addAuthorities(page.getContent());
+        return page;
+    }
+
+    /**
+     * Get the managed users following the given id, in id order, without counting them.
+     *
+     * @param id the id of the last user of the previous page, or null for the first page
+     * @param size the size of the page
+     * @return the page, with the id of its last user as next key
+     */
+    @Transactional(readOnly = true)
+    public KeysetSlice<UserDTO> getManagedUsersAfterId(Long id, int size) {
+        KeysetSlice<UserDTO> slice = KeysetSlice.of(userRepository.findAllDTOByLoginNotAndIdGreaterThan(Constants.ANONYMOUS_USER,
+            id != null ? id : Long.MIN_VALUE, new PageRequest(0, size + 1)), size, UserDTO::getId);
+        addAuthorities(slice.getContent());
+        return slice;
+    }
+
+    /**
+     * Get the managed users following the given login, in login order, without counting them.
+     *
+     * @param login the login of the last user of the previous page, or null for the first page
+     * @param size the size of the page
+     * @return the page, with the login of its last user as next key
+     */
+    @Transactional(readOnly = true)
+    public KeysetSlice<UserDTO> getManagedUsersAfterLogin(String login, int size) {
+        KeysetSlice<UserDTO> slice = KeysetSlice.of(userRepository.findAllDTOByLoginNotAndLoginGreaterThan(Constants.ANONYMOUS_USER,
+            login != null ? login : "", new PageRequest(0, size + 1)), size, UserDTO::getLogin);
+        addAuthorities(slice.getContent());
+        return slice;
+    }
+
+    @Transactional(readOnly = true)
+    public long countManagedUsers() {
+        return userRepository.countByLoginNot(Constants.ANONYMOUS_USER);
+    }
+
+    /**
+     * Adds their authorities to the users read by a projection query, with a single query.
+     */
+    private void addAuthorities(List<UserDTO> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        Map<Long, UserDTO> usersById = users.stream().collect(Collectors.toMap(UserDTO::getId, user -> user));
+        for (Object[] authority : userRepository.findAuthorityNamesByIdIn(usersById.keySet())) {
+            usersById.get((Long) authority[0]).getAuthorities().add((String) authority[1]);
+        }
     }
 
     @Transactional(readOnly = true)
@@ -230,6 +293,7 @@ public class UserService {
         for (User user : users) {
             log.debug("Deleting not activated user {}", user.getLogin());
             userRepository.delete(user);
+            userDetailsService.evict(user.getLogin());
         }
     }
 
@@ -10,6 +10,7 @@ import org.hibernate.validator.constraints.NotBlank;
 
 import javax.validation.constraints.*;
 import java.time.Instant;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -65,6 +66,17 @@ public class UserDTO {
                 .collect(Collectors.toSet()));
     }
 
+    /**
+     * Used by the projection queries of the UserRepository, which then add the authorities.
+     */
+    public UserDTO(Long id, String login, String firstName, String lastName,
+        String email, boolean activated, String imageUrl, String langKey,
+        String createdBy, Instant createdDate, String lastModifiedBy, Instant lastModifiedDate) {
+
+        this(id, login, firstName, lastName, email, activated, imageUrl, langKey,
+            createdBy, createdDate, lastModifiedBy, lastModifiedDate, new HashSet<>());
+    }
+
     public UserDTO(Long id, String login, String firstName, String lastName,
         String email, boolean activated, String imageUrl, String langKey,
         String createdBy, Instant createdDate, String lastModifiedBy, Instant lastModifiedDate,
@@ -0,0 +1,26 @@
+package com.souzadriano.multitenant.service.dto;
+
+import javax.validation.constraints.Size;
+
+/**
+ * A DTO representing a row of a user import, with an optional initial password.
+ */
+public class UserImportDTO extends UserDTO {
+
+    @Size(min = 4, max = 100)
+    private String password;
+
+    public UserImportDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String toString() {
+        return "UserImportDTO{" +
+            "} " + super.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package com.souzadriano.multitenant.service.dto;
+
+/**
+ * A DTO representing the outcome of a row of a user import.
+ */
+public class UserImportResultDTO {
+
+    public enum Status {
+        CREATED, FAILED
+    }
+
+    private final long line;
+
+    private final String login;
+
+    private final Status status;
+
+    private final String error;
+
+    private final String message;
+
+    private UserImportResultDTO(long line, String login, Status status, String error, String message) {
+        this.line = line;
+        this.login = login;
+        this.status = status;
+        this.error = error;
+        this.message = message;
+    }
+
+    public static UserImportResultDTO created(long line, String login) {
+        return new UserImportResultDTO(line, login, Status.CREATED, null, null);
+    }
+
+    /**
+     * A user that was created, but whose creation was only partly done, e.g. without its creation email.
+     */
+    public static UserImportResultDTO created(long line, String login, String error, String message) {
+        return new UserImportResultDTO(line, login, Status.CREATED, error, message);
+    }
+
+    public static UserImportResultDTO failed(long line, String login, String error, String message) {
+        return new UserImportResultDTO(line, login, Status.FAILED, error, message);
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "UserImportResultDTO{" +
+            "line=" + line +
+            ", login='" + login + '\'' +
+            ", status=" + status +
+            ", error='" + error + '\'' +
+            "}";
+    }
+}
@@ -0,0 +1,60 @@
+package com.souzadriano.multitenant.service.util;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A page read after a key instead of at an offset, with the key to read the following page after.
+ *
+ * @param <T> the type of the content
+ */
+public final class KeysetSlice<T> {
+
+    private final List<T> content;
+
+    private final String nextKey;
+
+    public KeysetSlice(List<T> content, String nextKey) {
+        this.content = Collections.unmodifiableList(content);
+        this.nextKey = nextKey;
+    }
+
+    /**
+     * Builds a slice from the rows read with a limit of one more than the size, the extra row only telling
+     * that there is a following page.
+     *
+     * @param rows the rows read, at most size + 1
+     * @param size the size of the page
+     * @param keyOf the key of a row
+     * @param <T> the type of the rows
+     * @return the slice
+     */
+    public static <T> KeysetSlice<T> of(List<T> rows, int size, Function<T, ?> keyOf) {
+        if (rows.size() <= size) {
+            return new KeysetSlice<>(rows, null);
+        }
+        List<T> content = rows.subList(0, size);
+        return new KeysetSlice<>(content, String.valueOf(keyOf.apply(content.get(size - 1))));
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    /**
+     * @return the key of the last element, or null if this is the last page
+     */
+    public String getNextKey() {
+        return nextKey;
+    }
+
+    public boolean hasNext() {
+        return nextKey != null;
+    }
+
+    public <U> KeysetSlice<U> map(Function<? super T, ? extends U> converter) {
+        return new KeysetSlice<>(content.stream().<U>map(converter).collect(Collectors.toList()), nextKey);
+    }
+}
@@ -1,8 +1,13 @@
 package com.souzadriano.multitenant.web.rest;
 
+import com.souzadriano.multitenant.service.AuditEventExportService;
 import com.souzadriano.multitenant.service.AuditEventService;
+import com.souzadriano.multitenant.service.util.KeysetSlice;
+import com.souzadriano.multitenant.web.rest.errors.CustomParameterizedException;
+import com.souzadriano.multitenant.web.rest.errors.ErrorConstants;
 import com.souzadriano.multitenant.web.rest.util.PaginationUtil;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.jhipster.web.util.ResponseUtil;
 import io.swagger.annotations.ApiParam;
 import org.springframework.boot.actuate.audit.AuditEvent;
@@ -10,9 +15,19 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.List;
@@ -24,10 +39,19 @@ import java.util.List;
 @RequestMapping("/management/audits")
 public class AuditResource {
 
+    private static final String CSV_HEADER = "timestamp,principal,type,data\n";
+
     private final AuditEventService auditEventService;
 
-    public AuditResource(AuditEventService auditEventService) {
+    private final AuditEventExportService auditEventExportService;
+
+    private final ObjectMapper objectMapper;
+
+    public AuditResource(AuditEventService auditEventService, AuditEventExportService auditEventExportService,
+        ObjectMapper objectMapper) {
         this.auditEventService = auditEventService;
+        this.auditEventExportService = auditEventExportService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -65,6 +89,110 @@ public class AuditResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /audits?cursor= : get a page of AuditEvents after a cursor, newest first, without the cost of an offset.
+     *
+     * @param cursor the cursor of the page, empty for the first page
+     * @param count whether to send the total count in the X-Total-Count header
+     * @param pageable the size of the page
+     * @return the ResponseEntity with status 200 (OK) and the list of AuditEvents in body,
+     * or with status 400 (Bad Request) if the cursor is not valid
+     */
+    @GetMapping(params = "cursor")
+    public ResponseEntity<List<AuditEvent>> getAllAfter(@RequestParam String cursor,
+        @RequestParam(defaultValue = "false") boolean count, @ApiParam Pageable pageable) {
+
+        KeysetSlice<AuditEvent> slice = auditEventService.findAllBefore(decodeId(cursor), pageable.getPageSize());
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(slice.getNextKey(),
+            count ? auditEventService.count() : null, pageable.getPageSize(), "/management/audits");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /audits?cursor= : get a page of AuditEvents between the fromDate and toDate after a cursor, newest first,
+     * without the cost of an offset.
+     *
+     * @param fromDate the start of the time period of AuditEvents to get
+     * @param toDate the end of the time period of AuditEvents to get
+     * @param cursor the cursor of the page, empty for the first page
+     * @param count whether to send the total count in the X-Total-Count header
+     * @param pageable the size of the page
+     * @return the ResponseEntity with status 200 (OK) and the list of AuditEvents in body,
+     * or with status 400 (Bad Request) if the cursor is not valid
+     */
+    @GetMapping(params = {"fromDate", "toDate", "cursor"})
+    public ResponseEntity<List<AuditEvent>> getByDatesAfter(
+        @RequestParam(value = "fromDate") LocalDate fromDate,
+        @RequestParam(value = "toDate") LocalDate toDate,
+        @RequestParam String cursor,
+        @RequestParam(defaultValue = "false") boolean count,
+        @ApiParam Pageable pageable) {
+
+        Instant from = fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant();
+        Instant to = toDate.atStartOfDay(ZoneId.systemDefault()).plusDays(1).toInstant();
+        KeysetSlice<AuditEvent> slice = auditEventService.findByDatesBefore(from, to, decodeId(cursor), pageable.getPageSize());
+        String baseUrl = UriComponentsBuilder.fromPath("/management/audits")
+            .queryParam("fromDate", fromDate).queryParam("toDate", toDate).toUriString();
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(slice.getNextKey(),
+            count ? auditEventService.countByDates(from, to) : null, pageable.getPageSize(), baseUrl);
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /audits/export : export the AuditEvents, oldest first, as NDJSON or, when text/csv is accepted, as CSV.
+     * <p>
+     * The events are written while they are read from the database, whatever the time period the response does
+     * not hold more than one event in memory.
+     *
+     * @param fromDate the start of the time period of AuditEvents to export, or none
+     * @param toDate the end of the time period of AuditEvents to export, or none
+     * @param principal the principal of the AuditEvents to export, or none for every principal
+     * @param type the type of the AuditEvents to export, or none for every type
+     * @param accept the media types accepted by the client
+     * @param response the response, with one AuditEvent per line as body
+     * @throws IOException if the response could not be written
+     */
+    @GetMapping(value = "/export", produces = {UserResource.APPLICATION_NDJSON_VALUE, UserResource.TEXT_CSV_VALUE})
+    public void export(
+        @RequestParam(value = "fromDate", required = false) LocalDate fromDate,
+        @RequestParam(value = "toDate", required = false) LocalDate toDate,
+        @RequestParam(value = "principal", required = false) String principal,
+        @RequestParam(value = "type", required = false) String type,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+        HttpServletResponse response) throws IOException {
+
+        boolean csv = accept != null && MediaType.parseMediaTypes(accept).stream()
+            .anyMatch(mediaType -> mediaType.includes(MediaType.parseMediaType(UserResource.TEXT_CSV_VALUE))
+                && !mediaType.isWildcardType());
+        response.setContentType((csv ? UserResource.TEXT_CSV_VALUE : UserResource.APPLICATION_NDJSON_VALUE) + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=audits." + (csv ? "csv" : "ndjson"));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        if (csv) {
+            writer.write(CSV_HEADER);
+        }
+        try {
+            auditEventExportService.export(
+                fromDate != null ? fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant() : null,
+                toDate != null ? toDate.atStartOfDay(ZoneId.systemDefault()).plusDays(1).toInstant() : null,
+                principal, type, event -> {
+                    try {
+                        if (csv) {
+                            writer.write(event.getTimestamp().toInstant() + "," + csvValue(event.getPrincipal()) + ","
+                                + csvValue(event.getType()) + "," + csvValue(objectMapper.writeValueAsString(event.getData())));
+                        } else {
+                            writer.write(objectMapper.writeValueAsString(event));
+                        }
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
     /**
      * GET  /audits/:id : get an AuditEvent by id.
      *
@@ -75,4 +203,26 @@ public class AuditResource {
     public ResponseEntity<AuditEvent> get(@PathVariable Long id) {
         return ResponseUtil.wrapOrNotFound(auditEventService.find(id));
     }
+
+    private Long decodeId(String cursor) {
+        String key = PaginationUtil.decodeCursor(cursor);
+        try {
+            return key != null ? Long.valueOf(key) : null;
+        } catch (NumberFormatException e) {
+            throw new CustomParameterizedException(ErrorConstants.ERR_INVALID_CURSOR, cursor);
+        }
+    }
+
+    /**
+     * Quotes the value when it contains a comma, a double quote or a line break, doubling its double quotes.
+     */
+    private static String csvValue(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
 }
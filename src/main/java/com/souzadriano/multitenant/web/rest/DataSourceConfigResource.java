@@ -1,6 +1,7 @@
 package com.souzadriano.multitenant.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
+import com.souzadriano.multitenant.config.multitenant.DataSourceConfigChangedEvent;
 import com.souzadriano.multitenant.domain.DataSourceConfig;
 
 import com.souzadriano.multitenant.repository.DataSourceConfigRepository;
@@ -8,6 +9,7 @@ import com.souzadriano.multitenant.web.rest.util.HeaderUtil;
 import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -31,8 +33,12 @@ public class DataSourceConfigResource {
 
     private final DataSourceConfigRepository dataSourceConfigRepository;
 
-    public DataSourceConfigResource(DataSourceConfigRepository dataSourceConfigRepository) {
+    private final ApplicationEventPublisher eventPublisher;
+
+    public DataSourceConfigResource(DataSourceConfigRepository dataSourceConfigRepository,
+            ApplicationEventPublisher eventPublisher) {
         this.dataSourceConfigRepository = dataSourceConfigRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -50,6 +56,7 @@ public class DataSourceConfigResource {
             return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert(ENTITY_NAME, "idexists", "A new dataSourceConfig cannot already have an ID")).body(null);
         }
         DataSourceConfig result = dataSourceConfigRepository.save(dataSourceConfig);
+        eventPublisher.publishEvent(DataSourceConfigChangedEvent.created(result));
         return ResponseEntity.created(new URI("/api/data-source-configs/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString()))
             .body(result);
@@ -71,7 +78,11 @@ public class DataSourceConfigResource {
         if (dataSourceConfig.getId() == null) {
             return createDataSourceConfig(dataSourceConfig);
         }
+        String previousName = Optional.ofNullable(dataSourceConfigRepository.findOne(dataSourceConfig.getId()))
+            .map(DataSourceConfig::getName)
+            .orElse(null);
         DataSourceConfig result = dataSourceConfigRepository.save(dataSourceConfig);
+        eventPublisher.publishEvent(DataSourceConfigChangedEvent.updated(result, previousName));
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, dataSourceConfig.getId().toString()))
             .body(result);
@@ -113,7 +124,11 @@ public class DataSourceConfigResource {
     @Timed
     public ResponseEntity<Void> deleteDataSourceConfig(@PathVariable Long id) {
         log.debug("REST request to delete DataSourceConfig : {}", id);
+        DataSourceConfig dataSourceConfig = dataSourceConfigRepository.findOne(id);
         dataSourceConfigRepository.delete(id);
+        if (dataSourceConfig != null) {
+            eventPublisher.publishEvent(DataSourceConfigChangedEvent.deleted(dataSourceConfig));
+        }
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString())).build();
     }
 }
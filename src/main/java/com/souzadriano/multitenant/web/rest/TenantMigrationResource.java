@@ -0,0 +1,34 @@
+package com.souzadriano.multitenant.web.rest;
+
+import com.souzadriano.multitenant.config.multitenant.TenantMigration;
+import com.souzadriano.multitenant.config.multitenant.TenantMigrationScheduler;
+
+import com.codahale.metrics.annotation.Timed;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controller for viewing the Liquibase migrations of the tenant databases.
+ */
+@RestController
+@RequestMapping("/management")
+public class TenantMigrationResource {
+
+    private final TenantMigrationScheduler tenantMigrationScheduler;
+
+    public TenantMigrationResource(TenantMigrationScheduler tenantMigrationScheduler) {
+        this.tenantMigrationScheduler = tenantMigrationScheduler;
+    }
+
+    /**
+     * GET  /tenant-migrations : get the status of the latest migration of each tenant.
+     *
+     * @return the list of migrations, ordered by tenant
+     */
+    @GetMapping("/tenant-migrations")
+    @Timed
+    public List<TenantMigration> getAll() {
+        return tenantMigrationScheduler.getMigrations();
+    }
+}
@@ -6,11 +6,17 @@ import com.souzadriano.multitenant.domain.User;
 import com.souzadriano.multitenant.repository.UserRepository;
 import com.souzadriano.multitenant.security.AuthoritiesConstants;
 import com.souzadriano.multitenant.service.MailService;
+import com.souzadriano.multitenant.service.UserImportService;
 import com.souzadriano.multitenant.service.UserService;
 import com.souzadriano.multitenant.service.dto.UserDTO;
+import com.souzadriano.multitenant.service.dto.UserImportResultDTO;
+import com.souzadriano.multitenant.service.util.KeysetSlice;
+import com.souzadriano.multitenant.web.rest.errors.CustomParameterizedException;
+import com.souzadriano.multitenant.web.rest.errors.ErrorConstants;
 import com.souzadriano.multitenant.web.rest.vm.ManagedUserVM;
 import com.souzadriano.multitenant.web.rest.util.HeaderUtil;
 import com.souzadriano.multitenant.web.rest.util.PaginationUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.jhipster.web.util.ResponseUtil;
 import io.swagger.annotations.ApiParam;
 
@@ -20,13 +26,21 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -61,18 +75,32 @@ public class UserResource {
 
     private static final String ENTITY_NAME = "userManagement";
 
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    public static final String TEXT_CSV_VALUE = "text/csv";
+
+    private static final String ID_KEY_PREFIX = "id:";
+
+    private static final String LOGIN_KEY_PREFIX = "login:";
+
     private final UserRepository userRepository;
 
     private final MailService mailService;
 
     private final UserService userService;
 
+    private final UserImportService userImportService;
+
+    private final ObjectMapper objectMapper;
+
     public UserResource(UserRepository userRepository, MailService mailService,
-            UserService userService) {
+            UserService userService, UserImportService userImportService, ObjectMapper objectMapper) {
 
         this.userRepository = userRepository;
         this.mailService = mailService;
         this.userService = userService;
+        this.userImportService = userImportService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -114,6 +142,48 @@ public class UserResource {
         }
     }
 
+    /**
+     * POST  /users/import : Imports users in bulk.
+     * <p>
+     * Reads the users as NDJSON, or as CSV with a header line, while the request body arrives, and writes the
+     * outcome of each row as NDJSON as soon as its chunk has been saved. Users without a password get a
+     * creation mail, as with POST /users.
+     *
+     * @param request the request, with the users to import as body
+     * @param response the response, with one result per row as body
+     * @throws IOException if the request could not be read or the response could not be written
+     */
+    @PostMapping(value = "/users/import", consumes = {APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE},
+        produces = APPLICATION_NDJSON_VALUE)
+    @Timed
+    @Secured(AuthoritiesConstants.ADMIN)
+    public void importUsers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.debug("REST request to import Users");
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        UserImportService.Format format = contentType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV_VALUE))
+            ? UserImportService.Format.CSV : UserImportService.Format.NDJSON;
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        ServletOutputStream out = response.getOutputStream();
+        try {
+            userImportService.importUsers(
+                new InputStreamReader(request.getInputStream(), contentType.getCharset() != null
+                    ? contentType.getCharset() : StandardCharsets.UTF_8),
+                format, results -> {
+                    try {
+                        for (UserImportResultDTO result : results) {
+                            out.write(objectMapper.writeValueAsBytes(result));
+                            out.write('\n');
+                        }
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     /**
      * PUT  /users : Updates an existing User.
      *
@@ -155,6 +225,45 @@ public class UserResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /users?cursor= : get a page of users after a cursor, without the cost of an offset.
+     * <p>
+     * The first page is read with an empty cursor, in id order, or in login order if sorted by login, and the
+     * following pages with the cursor of the "next" link.
+     *
+     * @param cursor the cursor of the page, empty for the first page
+     * @param count whether to send the total count in the X-Total-Count header
+     * @param pageable the size, and the sort of the first page
+     * @return the ResponseEntity with status 200 (OK) and with body the users of the page,
+     * or with status 400 (Bad Request) if the cursor is not valid
+     */
+    @GetMapping(value = "/users", params = "cursor")
+    @Timed
+    public ResponseEntity<List<UserDTO>> getUsersAfter(@RequestParam String cursor,
+            @RequestParam(defaultValue = "false") boolean count, @ApiParam Pageable pageable) {
+        String key = PaginationUtil.decodeCursor(cursor);
+        boolean byLogin = key == null
+            ? pageable.getSort() != null && pageable.getSort().getOrderFor("login") != null
+            : key.startsWith(LOGIN_KEY_PREFIX);
+        String keyPrefix = byLogin ? LOGIN_KEY_PREFIX : ID_KEY_PREFIX;
+        if (key != null && !key.startsWith(keyPrefix)) {
+            throw new CustomParameterizedException(ErrorConstants.ERR_INVALID_CURSOR, cursor);
+        }
+        String after = key != null ? key.substring(keyPrefix.length()) : null;
+        KeysetSlice<UserDTO> slice;
+        try {
+            slice = byLogin
+                ? userService.getManagedUsersAfterLogin(after, pageable.getPageSize())
+                : userService.getManagedUsersAfterId(after != null ? Long.valueOf(after) : null, pageable.getPageSize());
+        } catch (NumberFormatException e) {
+            throw new CustomParameterizedException(ErrorConstants.ERR_INVALID_CURSOR, cursor);
+        }
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(
+            slice.hasNext() ? keyPrefix + slice.getNextKey() : null,
+            count ? userService.countManagedUsers() : null, pageable.getPageSize(), "/api/users");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+
     /**
      * @return a string list of the all of the roles
      */
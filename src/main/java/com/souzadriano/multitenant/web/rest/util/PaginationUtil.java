@@ -1,15 +1,25 @@
 package com.souzadriano.multitenant.web.rest.util;
 
+import com.souzadriano.multitenant.web.rest.errors.CustomParameterizedException;
+import com.souzadriano.multitenant.web.rest.errors.ErrorConstants;
+
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
 /**
  * Utility class for handling pagination.
  *
  * <p>
  * Pagination uses the same principles as the <a href="https://developer.github.com/v3/#pagination">GitHub API</a>,
  * and follow <a href="http://tools.ietf.org/html/rfc5988">RFC 5988 (Link header)</a>.
+ * <p>
+ * Pages can also be read after a cursor, given by the "cursor" parameter, which is empty for the first page.
+ * Such a page costs the same at any depth, as it is read from an index after the key of the previous page
+ * instead of at an offset, and the total count is only computed when the "count" parameter is true.
  */
 public final class PaginationUtil {
 
@@ -39,6 +49,56 @@ public final class PaginationUtil {
         return headers;
     }
 
+    /**
+     * Generates the headers of a page read after a cursor: a "next" link while there are following pages, a
+     * "first" link, and the total count when it was computed.
+     *
+     * @param nextKey the key of the last element of the page, or null if it is the last page
+     * @param totalCount the total count, or null if it was not requested
+     * @param size the size of the page
+     * @param baseUrl the URL of the resource
+     * @return the headers
+     */
+    public static HttpHeaders generateKeysetPaginationHttpHeaders(String nextKey, Long totalCount, int size, String baseUrl) {
+        HttpHeaders headers = new HttpHeaders();
+        if (totalCount != null) {
+            headers.add("X-Total-Count", Long.toString(totalCount));
+        }
+        String link = "";
+        if (nextKey != null) {
+            link = "<" + generateCursorUri(baseUrl, encodeCursor(nextKey), size) + ">; rel=\"next\",";
+        }
+        link += "<" + generateCursorUri(baseUrl, "", size) + ">; rel=\"first\"";
+        headers.add(HttpHeaders.LINK, link);
+        return headers;
+    }
+
+    /**
+     * @return the opaque cursor of the key
+     */
+    public static String encodeCursor(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the key of the cursor, or null for the empty cursor of the first page
+     * @throws CustomParameterizedException if the cursor was not generated by {@link #encodeCursor(String)}
+     */
+    public static String decodeCursor(String cursor) {
+        if (cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new CustomParameterizedException(ErrorConstants.ERR_INVALID_CURSOR, cursor);
+        }
+    }
+
+    private static String generateCursorUri(String baseUrl, String cursor, int size) {
+        return UriComponentsBuilder.fromUriString(baseUrl).queryParam("cursor", cursor).queryParam("size", size).toUriString();
+    }
+
     private static String generateUri(String baseUrl, int page, int size) {
         return UriComponentsBuilder.fromUriString(baseUrl).queryParam("page", page).queryParam("size", size).toUriString();
     }
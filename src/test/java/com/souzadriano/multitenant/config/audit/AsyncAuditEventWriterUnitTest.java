@@ -0,0 +1,155 @@
+package com.souzadriano.multitenant.config.audit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.souzadriano.multitenant.config.ApplicationProperties;
+import com.souzadriano.multitenant.config.multitenant.TenantContextHolder;
+import com.souzadriano.multitenant.domain.PersistentAuditEvent;
+import com.souzadriano.multitenant.repository.PersistenceAuditEventRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+
+/**
+ * Test class for the AsyncAuditEventWriter, whose background thread is not started, so that the events stay queued
+ * until they are flushed.
+ *
+ * @see AsyncAuditEventWriter
+ */
+public class AsyncAuditEventWriterUnitTest {
+
+    private final List<String> savedTenants = new ArrayList<>();
+
+    private final List<List<String>> savedPrincipals = new ArrayList<>();
+
+    private ApplicationProperties applicationProperties;
+
+    private MetricRegistry metricRegistry;
+
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private PlatformTransactionManager transactionManager;
+
+    @Before
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudit().setQueueCapacity(2);
+        metricRegistry = new MetricRegistry();
+        persistenceAuditEventRepository = Mockito.mock(PersistenceAuditEventRepository.class);
+        Mockito.when(persistenceAuditEventRepository.save(anyListOf(PersistentAuditEvent.class))).thenAnswer(invocation -> {
+            List<String> principals = new ArrayList<>();
+            for (PersistentAuditEvent event : (Iterable<PersistentAuditEvent>) invocation.getArguments()[0]) {
+                principals.add(event.getPrincipal());
+            }
+            savedTenants.add(TenantContextHolder.getTenantId());
+            savedPrincipals.add(principals);
+            return null;
+        });
+        transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        Mockito.when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    private AsyncAuditEventWriter newWriter() {
+        return new AsyncAuditEventWriter(persistenceAuditEventRepository, transactionManager, applicationProperties,
+            metricRegistry);
+    }
+
+    private static PersistentAuditEvent event(String principal) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(principal);
+        return event;
+    }
+
+    @Test
+    public void testSaveOneBatchPerTenant() throws Exception {
+        applicationProperties.getAudit().setQueueCapacity(10);
+        AsyncAuditEventWriter writer = newWriter();
+
+        TenantContextHolder.runAs("tenant-a", () -> writer.write(event("first")));
+        TenantContextHolder.runAs("tenant-b", () -> writer.write(event("second")));
+        TenantContextHolder.runAs("tenant-a", () -> writer.write(event("third")));
+        assertThat(metricRegistry.getGauges().get("audit.write-behind.queue-depth").getValue()).isEqualTo(3);
+        writer.flush();
+
+        assertThat(savedTenants).containsExactly("tenant-a", "tenant-b");
+        assertThat(savedPrincipals).containsExactly(Arrays.asList("first", "third"), Arrays.asList("second"));
+        assertThat(metricRegistry.timer("audit.write-behind.flush").getCount()).isEqualTo(2);
+        assertThat(TenantContextHolder.getTenantId()).isNull();
+    }
+
+    @Test
+    public void testDropOldestWhenFull() throws Exception {
+        AsyncAuditEventWriter writer = newWriter();
+
+        writer.write(event("first"));
+        writer.write(event("second"));
+        writer.write(event("third"));
+        writer.flush();
+
+        assertThat(savedPrincipals).containsExactly(Arrays.asList("second", "third"));
+        assertThat(metricRegistry.meter("audit.write-behind.dropped").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDropsAreCountedPerTenant() throws Exception {
+        AsyncAuditEventWriter writer = newWriter();
+
+        TenantContextHolder.runAs("tenant-a", () -> writer.write(event("first")));
+        TenantContextHolder.runAs("tenant-b", () -> writer.write(event("second")));
+        TenantContextHolder.runAs("tenant-b", () -> writer.write(event("third")));
+        writer.flush();
+
+        // The event of tenant-a makes room for the one of tenant-b
+        assertThat(metricRegistry.meter("audit.write-behind.tenant-a.dropped").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter("audit.write-behind.tenant-b.dropped").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testStopSavesTheQueuedEvents() throws Exception {
+        AsyncAuditEventWriter writer = newWriter();
+        writer.start();
+
+        writer.write(event("first"));
+        writer.stop();
+
+        assertThat(savedPrincipals).containsExactly(Arrays.asList("first"));
+        assertThat(metricRegistry.meter("audit.write-behind.dropped").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testSampleWhenFull() throws Exception {
+        applicationProperties.getAudit().setOverflowPolicy(ApplicationProperties.Audit.OverflowPolicy.SAMPLE);
+        applicationProperties.getAudit().setSampleRate(2);
+        AsyncAuditEventWriter writer = newWriter();
+
+        for (int i = 0; i < 6; i++) {
+            writer.write(event("event-" + i));
+        }
+        writer.flush();
+
+        // Of the four events beyond the capacity, the first and third are kept in place of the oldest ones
+        assertThat(savedPrincipals).containsExactly(Arrays.asList("event-2", "event-4"));
+        assertThat(metricRegistry.meter("audit.write-behind.dropped").getCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void testCountFailedBatchesAsDropped() throws Exception {
+        Mockito.when(persistenceAuditEventRepository.save(anyListOf(PersistentAuditEvent.class)))
+            .thenThrow(new IllegalStateException("database down"));
+        AsyncAuditEventWriter writer = newWriter();
+
+        writer.write(event("first"));
+        writer.flush();
+
+        assertThat(metricRegistry.meter("audit.write-behind.dropped").getCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,382 @@
+package com.souzadriano.multitenant.config.multitenant;
+
+import com.souzadriano.multitenant.config.ApplicationProperties;
+import com.souzadriano.multitenant.domain.DataSourceConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.DataSourceLookupFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the pools of the MultiTenantDataSourceLookup, with tenant databases in H2.
+ *
+ * @see MultiTenantDataSourceLookup
+ */
+public class MultiTenantDataSourceLookupUnitTest {
+
+    private static final String CREATE_DATASOURCE_CONFIG = "CREATE TABLE mt_datasource_config (" +
+        "id bigint auto_increment primary key, name varchar(255), url varchar(255), username varchar(255), " +
+        "jhi_password varchar(255), initialize boolean, maximum_pool_size integer, minimum_idle integer, " +
+        "connection_timeout bigint, max_lifetime bigint, data_source_properties varchar(255))";
+
+    private static final String INSERT_DATASOURCE_CONFIG = "INSERT INTO mt_datasource_config " +
+        "(name, url, username, jhi_password, initialize, maximum_pool_size, data_source_properties) VALUES (?, ?, 'sa', '', false, ?, ?)";
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private static final long HAND_OUT_GRACE_MILLIS = 5000;
+
+    private HikariDataSource defaultDataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private ApplicationProperties applicationProperties;
+
+    private Cache secondLevelCache;
+
+    private MultiTenantDataSourceLookup dataSourceLookup;
+
+    @Before
+    public void setup() {
+        defaultDataSource = new HikariDataSource();
+        defaultDataSource.setJdbcUrl("jdbc:h2:mem:lookup-default;DB_CLOSE_DELAY=-1");
+        defaultDataSource.setUsername("sa");
+        defaultDataSource.setMaximumPoolSize(2);
+        jdbcTemplate = new JdbcTemplate(defaultDataSource);
+        jdbcTemplate.execute(CREATE_DATASOURCE_CONFIG);
+
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getMultitenancy().setLazyInitialization(true);
+        secondLevelCache = Mockito.mock(Cache.class);
+        SessionFactory sessionFactory = Mockito.mock(SessionFactory.class);
+        when(sessionFactory.getCache()).thenReturn(secondLevelCache);
+        EntityManagerFactory entityManagerFactory = Mockito.mock(EntityManagerFactory.class);
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        ApplicationContext context = Mockito.mock(ApplicationContext.class);
+        when(context.getBean(EntityManagerFactory.class)).thenReturn(entityManagerFactory);
+
+        dataSourceLookup = new MultiTenantDataSourceLookup(defaultDataSource, context);
+        ReflectionTestUtils.setField(dataSourceLookup, "context", context);
+        ReflectionTestUtils.setField(dataSourceLookup, "applicationProperties", applicationProperties);
+        ReflectionTestUtils.setField(dataSourceLookup, "taskExecutor", new SyncTaskExecutor());
+        ReflectionTestUtils.setField(dataSourceLookup, "migrationScheduler", Mockito.mock(TenantMigrationScheduler.class));
+    }
+
+    @After
+    public void tearDown() {
+        dataSourceLookup.closeTenantDataSources();
+        jdbcTemplate.execute("DROP TABLE mt_datasource_config");
+        defaultDataSource.close();
+    }
+
+    private DataSourceConfig addTenant(String tenantId, Integer maximumPoolSize, String dataSourceProperties) {
+        jdbcTemplate.update(INSERT_DATASOURCE_CONFIG, tenantId, "jdbc:h2:mem:" + tenantId, maximumPoolSize,
+            dataSourceProperties);
+        return new DataSourceConfig().name(tenantId);
+    }
+
+    private DataSourceConfig addTenant(String tenantId) {
+        return addTenant(tenantId, 2, null);
+    }
+
+    private HikariDataSource getDataSource(String tenantId) throws Exception {
+        HikariDataSource dataSource = (HikariDataSource) dataSourceLookup.getDataSource(tenantId);
+        // Starts the pool, so that it is registered in JMX like a pool in use
+        dataSource.getConnection().close();
+        return dataSource;
+    }
+
+    private static boolean awaitClosed(HikariDataSource dataSource) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS;
+        while (!dataSource.isClosed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        return dataSource.isClosed();
+    }
+
+    @Test
+    public void testDataSourceIsCreatedOnFirstUse() throws Exception {
+        addTenant("lookup-lazy");
+
+        assertThat(dataSourceLookup.isDataSourceOpen("lookup-lazy")).isFalse();
+        DataSource dataSource = dataSourceLookup.getDataSource("lookup-lazy");
+
+        assertThat(dataSourceLookup.isDataSourceOpen("lookup-lazy")).isTrue();
+        assertThat(dataSourceLookup.getDataSource("lookup-lazy")).isSameAs(dataSource);
+    }
+
+    @Test
+    public void testUnknownTenantIsNotCreated() throws Exception {
+        assertThatThrownBy(() -> dataSourceLookup.getDataSource("lookup-unknown"))
+            .isInstanceOf(DataSourceLookupFailureException.class);
+        assertThat(dataSourceLookup.isDataSourceOpen("lookup-unknown")).isFalse();
+    }
+
+    @Test
+    public void testConcurrentFirstRequestsCreateOnePool() throws Exception {
+        addTenant("lookup-single-flight");
+        int requests = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<DataSource>> dataSources = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                dataSources.add(executor.submit(() -> {
+                    start.await();
+                    return dataSourceLookup.getDataSource("lookup-single-flight");
+                }));
+            }
+            start.countDown();
+
+            Set<DataSource> distinct = new HashSet<>();
+            for (Future<DataSource> dataSource : dataSources) {
+                distinct.add(dataSource.get(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            }
+            assertThat(distinct).hasSize(1);
+            assertThat(((AtomicInteger) ReflectionTestUtils.getField(dataSourceLookup, "poolSequence")).get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParseDataSourceProperties() {
+        Properties properties = MultiTenantDataSourceLookup.parseDataSourceProperties(
+            "cachePrepStmts=true; prepStmtCacheSize = 250 ;options=a=b");
+
+        assertThat(properties).containsOnly(entry("cachePrepStmts", "true"), entry("prepStmtCacheSize", "250"),
+            entry("options", "a=b"));
+    }
+
+    @Test
+    public void testParseEmptyDataSourceProperties() {
+        assertThat(MultiTenantDataSourceLookup.parseDataSourceProperties(null)).isEmpty();
+        assertThat(MultiTenantDataSourceLookup.parseDataSourceProperties("")).isEmpty();
+        assertThat(MultiTenantDataSourceLookup.parseDataSourceProperties("  ")).isEmpty();
+        assertThat(MultiTenantDataSourceLookup.parseDataSourceProperties(";;")).isEmpty();
+    }
+
+    @Test
+    public void testParseMalformedDataSourceProperties() {
+        Properties properties = MultiTenantDataSourceLookup.parseDataSourceProperties("noValue; =orphan;empty=;valid=1");
+
+        assertThat(properties).containsOnly(entry("empty", ""), entry("valid", "1"));
+    }
+
+    @Test
+    public void testTenantPoolSettingsOverrideTheDefaults() throws Exception {
+        defaultDataSource.addDataSourceProperty("defaultProperty", "default");
+        addTenant("lookup-sized", 4, "tenantProperty=tenant;defaultProperty=overridden");
+        jdbcTemplate.update("UPDATE mt_datasource_config SET connection_timeout = 1234 WHERE name = 'lookup-sized'");
+
+        HikariDataSource dataSource = (HikariDataSource) dataSourceLookup.getDataSource("lookup-sized");
+
+        assertThat(dataSource.getMaximumPoolSize()).isEqualTo(4);
+        assertThat(dataSource.getConnectionTimeout()).isEqualTo(1234);
+        assertThat(dataSource.getDataSourceProperties()).containsOnly(entry("tenantProperty", "tenant"),
+            entry("defaultProperty", "overridden"));
+    }
+
+    @Test
+    public void testTenantPoolFallsBackToTheDefaultSettings() throws Exception {
+        defaultDataSource.setConnectionTimeout(4321);
+        defaultDataSource.setMaxLifetime(600000);
+        defaultDataSource.addDataSourceProperty("defaultProperty", "default");
+        addTenant("lookup-defaults", null, null);
+
+        HikariDataSource dataSource = (HikariDataSource) dataSourceLookup.getDataSource("lookup-defaults");
+
+        assertThat(dataSource.getMaximumPoolSize()).isEqualTo(defaultDataSource.getMaximumPoolSize());
+        assertThat(dataSource.getConnectionTimeout()).isEqualTo(4321);
+        assertThat(dataSource.getMaxLifetime()).isEqualTo(600000);
+        assertThat(dataSource.getDataSourceProperties()).containsOnly(entry("defaultProperty", "default"));
+    }
+
+    @Test
+    public void testIdlePoolIsEvictedOnceNoLongerInUse() throws Exception {
+        applicationProperties.getMultitenancy().setIdlePoolTimeoutSeconds(1);
+        addTenant("lookup-idle");
+        HikariDataSource dataSource = getDataSource("lookup-idle");
+
+        // Idle for longer than the timeout, but handed out too recently
+        Thread.sleep(1100);
+        dataSourceLookup.evictIdleDataSources();
+        assertThat(dataSource.isClosed()).isFalse();
+
+        Thread.sleep(HAND_OUT_GRACE_MILLIS);
+        try (Connection connection = dataSource.getConnection()) {
+            dataSourceLookup.evictIdleDataSources();
+            assertThat(dataSource.isClosed()).isFalse();
+        }
+
+        dataSourceLookup.evictIdleDataSources();
+        assertThat(dataSource.isClosed()).isTrue();
+        assertThat(dataSourceLookup.isDataSourceOpen("lookup-idle")).isFalse();
+        assertThat(dataSourceLookup.getDataSource("lookup-idle")).isNotSameAs(dataSource);
+    }
+
+    @Test
+    public void testMaxPoolsIsEnforced() throws Exception {
+        applicationProperties.getMultitenancy().setMaxPools(1);
+        addTenant("lookup-max-pools-1");
+        addTenant("lookup-max-pools-2");
+        HikariDataSource dataSource = getDataSource("lookup-max-pools-1");
+
+        // The first pool was just handed out and cannot make room
+        assertThatThrownBy(() -> dataSourceLookup.getDataSource("lookup-max-pools-2"))
+            .isInstanceOf(DataSourceLookupFailureException.class);
+        assertThat(dataSource.isClosed()).isFalse();
+
+        Thread.sleep(HAND_OUT_GRACE_MILLIS + 100);
+        assertThat(getDataSource("lookup-max-pools-2").isClosed()).isFalse();
+        assertThat(dataSource.isClosed()).isTrue();
+        assertThat(dataSourceLookup.isDataSourceOpen("lookup-max-pools-1")).isFalse();
+    }
+
+    @Test
+    public void testMaxTotalConnectionsIsEnforced() throws Exception {
+        applicationProperties.getMultitenancy().setMaxTotalConnections(5);
+        addTenant("lookup-max-connections-1", 3, null);
+        addTenant("lookup-max-connections-2", 3, null);
+        addTenant("lookup-max-connections-3", 2, null);
+        addTenant("lookup-max-connections-4", 6, null);
+        getDataSource("lookup-max-connections-1");
+
+        assertThatThrownBy(() -> dataSourceLookup.getDataSource("lookup-max-connections-2"))
+            .isInstanceOf(DataSourceLookupFailureException.class);
+        assertThatThrownBy(() -> dataSourceLookup.getDataSource("lookup-max-connections-4"))
+            .isInstanceOf(DataSourceLookupFailureException.class);
+        assertThat(getDataSource("lookup-max-connections-3").isClosed()).isFalse();
+    }
+
+    @Test
+    public void testReservationWaitsForDrainingPools() throws Exception {
+        applicationProperties.getMultitenancy().setMaxTotalConnections(3);
+        DataSourceConfig tenant = addTenant("lookup-draining", 2, null);
+        addTenant("lookup-waiting", 2, null);
+        HikariDataSource dataSource = getDataSource("lookup-draining");
+        Connection connection = dataSource.getConnection();
+        dataSourceLookup.handleDataSourceConfigChange(DataSourceConfigChangedEvent.deleted(tenant));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<DataSource> waiting = executor.submit(() -> dataSourceLookup.getDataSource("lookup-waiting"));
+            Thread.sleep(1000);
+            assertThat(waiting.isDone()).isFalse();
+
+            connection.close();
+            assertThat(waiting.get(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isNotNull();
+            assertThat(dataSource.isClosed()).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDeletedTenantPoolIsRemovedAndClosed() throws Exception {
+        DataSourceConfig tenant = addTenant("lookup-deleted");
+        HikariDataSource dataSource = getDataSource("lookup-deleted");
+
+        dataSourceLookup.handleDataSourceConfigChange(DataSourceConfigChangedEvent.deleted(tenant));
+
+        assertThat(dataSourceLookup.isDataSourceOpen("lookup-deleted")).isFalse();
+        assertThat(awaitClosed(dataSource)).isTrue();
+        Mockito.verify(secondLevelCache).evictAllRegions();
+    }
+
+    @Test
+    public void testUpdatedTenantPoolIsSwappedAndTheOldOneClosed() throws Exception {
+        DataSourceConfig tenant = addTenant("lookup-updated");
+        HikariDataSource dataSource = getDataSource("lookup-updated");
+
+        dataSourceLookup.handleDataSourceConfigChange(DataSourceConfigChangedEvent.updated(tenant, "lookup-updated"));
+        HikariDataSource replacement = getDataSource("lookup-updated");
+
+        assertThat(replacement).isNotSameAs(dataSource);
+        assertThat(replacement.isClosed()).isFalse();
+        assertThat(awaitClosed(dataSource)).isTrue();
+        Mockito.verify(secondLevelCache).evictAllRegions();
+    }
+
+    @Test
+    public void testUpdatedTenantPoolIsDrainedBeforeBeingClosed() throws Exception {
+        DataSourceConfig tenant = addTenant("lookup-drained");
+        HikariDataSource dataSource = getDataSource("lookup-drained");
+
+        try (Connection connection = dataSource.getConnection()) {
+            dataSourceLookup.handleDataSourceConfigChange(DataSourceConfigChangedEvent.updated(tenant, "lookup-drained"));
+            Thread.sleep(1000);
+            assertThat(dataSource.isClosed()).isFalse();
+        }
+        assertThat(awaitClosed(dataSource)).isTrue();
+    }
+
+    @Test
+    public void testRenamedTenantPoolIsRemovedUnderItsPreviousName() throws Exception {
+        addTenant("lookup-renamed");
+        HikariDataSource dataSource = getDataSource("lookup-renamed");
+        jdbcTemplate.update("UPDATE mt_datasource_config SET name = ? WHERE name = ?", "lookup-new-name", "lookup-renamed");
+
+        dataSourceLookup.handleDataSourceConfigChange(DataSourceConfigChangedEvent.updated(
+            new DataSourceConfig().name("lookup-new-name"), "lookup-renamed"));
+
+        assertThat(dataSourceLookup.isDataSourceOpen("lookup-renamed")).isFalse();
+        assertThat(awaitClosed(dataSource)).isTrue();
+        assertThat(getDataSource("lookup-new-name").isClosed()).isFalse();
+    }
+
+    @Test
+    public void testChangeOfDefaultDataSourceIsIgnored() throws Exception {
+        DataSourceConfig defaultTenant = new DataSourceConfig().name("default");
+
+        dataSourceLookup.handleDataSourceConfigChange(DataSourceConfigChangedEvent.deleted(defaultTenant));
+        dataSourceLookup.handleDataSourceConfigChange(DataSourceConfigChangedEvent.updated(
+            new DataSourceConfig().name("lookup-renamed-default"), "default"));
+
+        assertThat(dataSourceLookup.getDataSource("default")).isSameAs(defaultDataSource);
+        assertThat(defaultDataSource.isClosed()).isFalse();
+        Mockito.verifyZeroInteractions(secondLevelCache);
+    }
+
+    @Test
+    public void testShutdownClosesThePoolsStillDraining() throws Exception {
+        DataSourceConfig tenant = addTenant("lookup-shutdown");
+        HikariDataSource dataSource = getDataSource("lookup-shutdown");
+
+        try (Connection connection = dataSource.getConnection()) {
+            dataSourceLookup.handleDataSourceConfigChange(DataSourceConfigChangedEvent.deleted(tenant));
+            dataSourceLookup.closeTenantDataSources();
+
+            assertThat(dataSource.isClosed()).isTrue();
+        }
+        assertThat(defaultDataSource.isClosed()).isFalse();
+    }
+}
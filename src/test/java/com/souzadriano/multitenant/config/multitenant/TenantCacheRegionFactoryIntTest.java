@@ -0,0 +1,74 @@
+package com.souzadriano.multitenant.config.multitenant;
+
+import com.codahale.metrics.MetricRegistry;
+import com.souzadriano.multitenant.MultitenantApp;
+import com.souzadriano.multitenant.domain.Authority;
+import com.souzadriano.multitenant.domain.DataSourceConfig;
+import com.souzadriano.multitenant.repository.AuthorityRepository;
+import com.souzadriano.multitenant.security.AuthoritiesConstants;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the TenantCacheRegionFactory.
+ *
+ * @see TenantCacheRegionFactory
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MultitenantApp.class)
+public class TenantCacheRegionFactoryIntTest {
+
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    public void testCachedEntitiesAreCountedPerTenant() {
+        entityManagerFactory.getCache().evict(Authority.class);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long hits = metricRegistry.meter("hibernate.cache.default.hits").getCount();
+        long misses = metricRegistry.meter("hibernate.cache.default.misses").getCount();
+
+        Authority first = transactionTemplate.execute(status -> authorityRepository.findOne(AuthoritiesConstants.ADMIN));
+        Authority second = transactionTemplate.execute(status -> authorityRepository.findOne(AuthoritiesConstants.ADMIN));
+
+        assertThat(second).isEqualTo(first);
+        assertThat(metricRegistry.meter("hibernate.cache.default.misses").getCount()).isEqualTo(misses + 1);
+        assertThat(metricRegistry.meter("hibernate.cache.default.hits").getCount()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void testCacheIsEvictedWhenATenantIsDeleted() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.execute(status -> authorityRepository.findOne(AuthoritiesConstants.ADMIN));
+        DataSourceConfig dataSourceConfig = new DataSourceConfig();
+        dataSourceConfig.setName("deleted-tenant");
+        long misses = metricRegistry.meter("hibernate.cache.default.misses").getCount();
+
+        eventPublisher.publishEvent(DataSourceConfigChangedEvent.deleted(dataSourceConfig));
+        transactionTemplate.execute(status -> authorityRepository.findOne(AuthoritiesConstants.ADMIN));
+
+        assertThat(metricRegistry.meter("hibernate.cache.default.misses").getCount()).isEqualTo(misses + 1);
+    }
+}
@@ -0,0 +1,99 @@
+package com.souzadriano.multitenant.config.multitenant;
+
+import com.souzadriano.multitenant.MultitenantApp;
+import com.souzadriano.multitenant.domain.DataSourceConfig;
+import com.souzadriano.multitenant.repository.DataSourceConfigRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the TenantMigrationScheduler.
+ *
+ * @see TenantMigrationScheduler
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MultitenantApp.class)
+public class TenantMigrationSchedulerIntTest {
+
+    private static final String TENANT_ID = "fingerprint-test";
+
+    private static final String SELECT_FINGERPRINT = "SELECT schema_fingerprint FROM mt_datasource_config WHERE name = ?";
+
+    @Autowired
+    private TenantMigrationScheduler tenantMigrationScheduler;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private DataSourceConfigRepository dataSourceConfigRepository;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private DataSourceConfig dataSourceConfig;
+
+    private HikariDataSource tenantDataSource;
+
+    @Before
+    public void setup() {
+        tenantDataSource = new HikariDataSource();
+        tenantDataSource.setJdbcUrl("jdbc:h2:mem:" + TENANT_ID + ";DB_CLOSE_DELAY=-1");
+        tenantDataSource.setUsername("sa");
+        tenantDataSource.setMaximumPoolSize(2);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        dataSourceConfig = dataSourceConfigRepository.saveAndFlush(new DataSourceConfig()
+            .name(TENANT_ID)
+            .url(tenantDataSource.getJdbcUrl())
+            .username("sa")
+            .password("")
+            .initialize(false));
+    }
+
+    @After
+    public void tearDown() {
+        dataSourceConfigRepository.delete(dataSourceConfig);
+        tenantMigrationScheduler.forget(TENANT_ID);
+        tenantDataSource.close();
+    }
+
+    @Test
+    public void testMigrationIsSkippedWhenFingerprintMatches() throws Exception {
+        assertThat(tenantMigrationScheduler.getChangelogFingerprint()).hasSize(64);
+
+        TenantMigration migration = tenantMigrationScheduler.migrate(TENANT_ID, tenantDataSource);
+        tenantMigrationScheduler.awaitMigration(TENANT_ID, 60, TimeUnit.SECONDS);
+        assertThat(migration.getStatus()).isEqualTo(TenantMigration.Status.DONE);
+        assertThat(jdbcTemplate.queryForObject(SELECT_FINGERPRINT, String.class, TENANT_ID))
+            .isEqualTo(tenantMigrationScheduler.getChangelogFingerprint());
+
+        migration = tenantMigrationScheduler.migrate(TENANT_ID, tenantDataSource);
+        tenantMigrationScheduler.awaitMigration(TENANT_ID, 60, TimeUnit.SECONDS);
+        assertThat(migration.getStatus()).isEqualTo(TenantMigration.Status.UP_TO_DATE);
+    }
+
+    @Test
+    public void testInvalidateForcesMigration() throws Exception {
+        tenantMigrationScheduler.migrate(TENANT_ID, tenantDataSource);
+        tenantMigrationScheduler.awaitMigration(TENANT_ID, 60, TimeUnit.SECONDS);
+
+        tenantMigrationScheduler.invalidate(TENANT_ID);
+        assertThat(jdbcTemplate.queryForObject(SELECT_FINGERPRINT, String.class, TENANT_ID)).isNull();
+
+        TenantMigration migration = tenantMigrationScheduler.migrate(TENANT_ID, tenantDataSource);
+        tenantMigrationScheduler.awaitMigration(TENANT_ID, 60, TimeUnit.SECONDS);
+        assertThat(migration.getStatus()).isEqualTo(TenantMigration.Status.DONE);
+    }
+}
@@ -1,7 +1,9 @@
 package com.souzadriano.multitenant.repository;
 
 import com.souzadriano.multitenant.MultitenantApp;
+import com.souzadriano.multitenant.config.ApplicationProperties;
 import com.souzadriano.multitenant.config.Constants;
+import com.souzadriano.multitenant.config.audit.AsyncAuditEventWriter;
 import com.souzadriano.multitenant.config.audit.AuditEventConverter;
 import com.souzadriano.multitenant.domain.PersistentAuditEvent;
 import org.junit.Before;
@@ -41,6 +43,11 @@ public class CustomAuditEventRepositoryIntTest {
     @Autowired
     private AuditEventConverter auditEventConverter;
 
+    @Autowired
+    private AsyncAuditEventWriter auditEventWriter;
+
+    private ApplicationProperties applicationProperties;
+
     private CustomAuditEventRepository customAuditEventRepository;
 
     private PersistentAuditEvent testUserEvent;
@@ -51,7 +58,9 @@ public class CustomAuditEventRepositoryIntTest {
 
     @Before
     public void setup() {
-        customAuditEventRepository = new CustomAuditEventRepository(persistenceAuditEventRepository, auditEventConverter);
+        applicationProperties = new ApplicationProperties();
+        customAuditEventRepository = new CustomAuditEventRepository(persistenceAuditEventRepository, auditEventConverter,
+            auditEventWriter, applicationProperties);
         persistenceAuditEventRepository.deleteAll();
         Instant oneHourAgo = Instant.now().minusSeconds(3600);
 
@@ -154,11 +163,42 @@ public class CustomAuditEventRepositoryIntTest {
     }
 
     @Test
-    public void addAuditEvent() {
+    public void testFindByTypeWithoutPrincipal() {
+        persistenceAuditEventRepository.save(testUserEvent);
+        testOtherUserEvent.setAuditEventType("test-other-type");
+        persistenceAuditEventRepository.save(testOtherUserEvent);
+
+        List<AuditEvent> events = customAuditEventRepository.find(null,
+            Date.from(testUserEvent.getAuditEventDate().minusSeconds(3600)), "test-other-type");
+        assertThat(events).extracting("principal").containsExactly("other-test-user");
+    }
+
+    @Test
+    public void testFindIsBoundedNewestFirst() {
+        applicationProperties.getAudit().setFindMaxResults(2);
+        persistenceAuditEventRepository.save(testOldUserEvent);
+        persistenceAuditEventRepository.save(testUserEvent);
+        PersistentAuditEvent testNewUserEvent = new PersistentAuditEvent();
+        testNewUserEvent.setPrincipal("test-user");
+        testNewUserEvent.setAuditEventType("test-type");
+        testNewUserEvent.setAuditEventDate(testUserEvent.getAuditEventDate().plusSeconds(60));
+        persistenceAuditEventRepository.save(testNewUserEvent);
+        persistenceAuditEventRepository.save(testOtherUserEvent);
+
+        assertThat(customAuditEventRepository.find(Date.from(Instant.EPOCH))).extracting("timestamp")
+            .containsExactly(Date.from(testNewUserEvent.getAuditEventDate()), Date.from(testUserEvent.getAuditEventDate()));
+        assertThat(customAuditEventRepository.find("test-user", null)).extracting("timestamp")
+            .containsExactly(Date.from(testNewUserEvent.getAuditEventDate()), Date.from(testUserEvent.getAuditEventDate()));
+        assertThat(customAuditEventRepository.find(null, null)).hasSize(2);
+    }
+
+    @Test
+    public void addAuditEvent() throws Exception {
         Map<String, Object> data = new HashMap<>();
         data.put("test-key", "test-value");
         AuditEvent event = new AuditEvent("test-user", "test-type", data);
         customAuditEventRepository.add(event);
+        auditEventWriter.flush();
         List<PersistentAuditEvent> persistentAuditEvents = persistenceAuditEventRepository.findAll();
         assertThat(persistentAuditEvents).hasSize(1);
         PersistentAuditEvent persistentAuditEvent = persistentAuditEvents.get(0);
@@ -170,7 +210,7 @@ public class CustomAuditEventRepositoryIntTest {
     }
 
     @Test
-    public void testAddEventWithWebAuthenticationDetails() {
+    public void testAddEventWithWebAuthenticationDetails() throws Exception {
         HttpSession session = new MockHttpSession(null, "test-session-id");
         MockHttpServletRequest request = new MockHttpServletRequest();
         request.setSession(session);
@@ -180,6 +220,7 @@ public class CustomAuditEventRepositoryIntTest {
         data.put("test-key", details);
         AuditEvent event = new AuditEvent("test-user", "test-type", data);
         customAuditEventRepository.add(event);
+        auditEventWriter.flush();
         List<PersistentAuditEvent> persistentAuditEvents = persistenceAuditEventRepository.findAll();
         assertThat(persistentAuditEvents).hasSize(1);
         PersistentAuditEvent persistentAuditEvent = persistentAuditEvents.get(0);
@@ -188,11 +229,12 @@ public class CustomAuditEventRepositoryIntTest {
     }
 
     @Test
-    public void testAddEventWithNullData() {
+    public void testAddEventWithNullData() throws Exception {
         Map<String, Object> data = new HashMap<>();
         data.put("test-key", null);
         AuditEvent event = new AuditEvent("test-user", "test-type", data);
         customAuditEventRepository.add(event);
+        auditEventWriter.flush();
         List<PersistentAuditEvent> persistentAuditEvents = persistenceAuditEventRepository.findAll();
         assertThat(persistentAuditEvents).hasSize(1);
         PersistentAuditEvent persistentAuditEvent = persistentAuditEvents.get(0);
@@ -200,21 +242,23 @@ public class CustomAuditEventRepositoryIntTest {
     }
 
     @Test
-    public void addAuditEventWithAnonymousUser() {
+    public void addAuditEventWithAnonymousUser() throws Exception {
         Map<String, Object> data = new HashMap<>();
         data.put("test-key", "test-value");
         AuditEvent event = new AuditEvent(Constants.ANONYMOUS_USER, "test-type", data);
         customAuditEventRepository.add(event);
+        auditEventWriter.flush();
         List<PersistentAuditEvent> persistentAuditEvents = persistenceAuditEventRepository.findAll();
         assertThat(persistentAuditEvents).hasSize(0);
     }
 
     @Test
-    public void addAuditEventWithAuthorizationFailureType() {
+    public void addAuditEventWithAuthorizationFailureType() throws Exception {
         Map<String, Object> data = new HashMap<>();
         data.put("test-key", "test-value");
         AuditEvent event = new AuditEvent("test-user", "AUTHORIZATION_FAILURE", data);
         customAuditEventRepository.add(event);
+        auditEventWriter.flush();
         List<PersistentAuditEvent> persistentAuditEvents = persistenceAuditEventRepository.findAll();
         assertThat(persistentAuditEvents).hasSize(0);
     }
@@ -0,0 +1,124 @@
+package com.souzadriano.multitenant.repository;
+
+import com.souzadriano.multitenant.MultitenantApp;
+import com.souzadriano.multitenant.domain.Authority;
+import com.souzadriano.multitenant.domain.User;
+import com.souzadriano.multitenant.security.AuthoritiesConstants;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the query cache of the UserRepository natural-key lookups and the JDBC batching of its saves.
+ *
+ * @see UserRepository
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MultitenantApp.class)
+public class UserRepositoryIntTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+
+    @Before
+    public void setup() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+    }
+
+    @Test
+    public void testFindOneByLoginIsCached() {
+        transactionTemplate.execute(status -> userRepository.findOneByLogin("user"));
+        long hits = statistics.getQueryCacheHitCount();
+
+        Optional<User> user = transactionTemplate.execute(status -> userRepository.findOneByLogin("user"));
+
+        assertThat(user).isPresent();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void testWriteInvalidatesCachedLookups() {
+        transactionTemplate.execute(status -> userRepository.findOneByEmail("user@localhost"));
+        String lastName = transactionTemplate.execute(status -> {
+            User user = userRepository.findOneByLogin("user").get();
+            String previous = user.getLastName();
+            user.setLastName("Cached");
+            return previous;
+        });
+        long hits = statistics.getQueryCacheHitCount();
+
+        try {
+            Optional<User> user = transactionTemplate.execute(status -> userRepository.findOneByEmail("user@localhost"));
+
+            assertThat(statistics.getQueryCacheHitCount()).isEqualTo(hits);
+            assertThat(user.get().getLastName()).isEqualTo("Cached");
+        } finally {
+            transactionTemplate.execute(status -> {
+                userRepository.findOneByLogin("user").get().setLastName(lastName);
+                return null;
+            });
+        }
+    }
+
+    @Test
+    public void testBulkSaveIsBatched() {
+        long statements = statistics.getPrepareStatementCount();
+        long inserts = statistics.getEntityInsertCount();
+
+        List<User> users = transactionTemplate.execute(status -> {
+            Authority authority = authorityRepository.findOne(AuthoritiesConstants.USER);
+            List<User> newUsers = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                User user = new User();
+                user.setLogin("batch-" + i);
+                user.setPassword(RandomStringUtils.random(60));
+                user.setActivated(true);
+                user.setAuthorities(Collections.singleton(authority));
+                newUsers.add(user);
+            }
+            return userRepository.save(newUsers);
+        });
+
+        try {
+            assertThat(statistics.getEntityInsertCount() - inserts).isEqualTo(20);
+            // One sequence call for up to 50 ids, one batch of users and one batch of authority links
+            assertThat(statistics.getPrepareStatementCount() - statements).isLessThanOrEqualTo(4);
+        } finally {
+            transactionTemplate.execute(status -> {
+                userRepository.delete(users);
+                return null;
+            });
+        }
+    }
+}
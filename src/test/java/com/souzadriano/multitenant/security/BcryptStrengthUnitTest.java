@@ -0,0 +1,28 @@
+package com.souzadriano.multitenant.security;
+
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the BcryptStrength utility class.
+ *
+ * @see BcryptStrength
+ */
+public class BcryptStrengthUnitTest {
+
+    @Test
+    public void testStrengthOfHash() {
+        assertThat(BcryptStrength.of(new BCryptPasswordEncoder(4).encode("password"))).isEqualTo(4);
+        assertThat(BcryptStrength.of("$2a$10$gSAhZrxMllrbgj/kkK9UceBPpChGWJA7SYIb1Mqo.n5aNLq1/oRrC")).isEqualTo(10);
+        assertThat(BcryptStrength.of("not a hash")).isEqualTo(-1);
+        assertThat(BcryptStrength.of(null)).isEqualTo(-1);
+    }
+
+    @Test
+    public void testCalibrateNeverBelowMinimum() {
+        assertThat(BcryptStrength.calibrate(4, 0)).isEqualTo(4);
+        assertThat(BcryptStrength.calibrate(4, 60000)).isGreaterThan(4);
+    }
+}
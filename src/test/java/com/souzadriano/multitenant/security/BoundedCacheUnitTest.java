@@ -0,0 +1,94 @@
+package com.souzadriano.multitenant.security;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the BoundedCache.
+ *
+ * @see BoundedCache
+ */
+public class BoundedCacheUnitTest {
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    @Test
+    public void testExpiredEntryIsNotReturned() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+        cache.put("expired", "value", System.currentTimeMillis() - 1);
+        cache.put("valid", "value", NEVER);
+
+        assertThat(cache.get("expired")).isNull();
+        assertThat(cache.get("valid")).isEqualTo("value");
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFullCacheDropsExpiredEntriesFirst() {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(10);
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, i, System.currentTimeMillis() - 1);
+        }
+        for (int i = 5; i < 11; i++) {
+            cache.put(i, i, NEVER);
+        }
+
+        assertThat(cache.size()).isEqualTo(6);
+        for (int i = 5; i < 11; i++) {
+            assertThat(cache.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void testFullCacheDropsLeastRecentlyUsedEntries() throws Exception {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(10);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, i, NEVER);
+            Thread.sleep(1);
+        }
+        cache.get(0);
+
+        cache.put(10, 10, NEVER);
+
+        assertThat(cache.size()).isEqualTo(9);
+        assertThat(cache.get(0)).isEqualTo(0);
+        assertThat(cache.get(10)).isEqualTo(10);
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.get(2)).isNull();
+    }
+
+    @Test
+    public void testCacheStaysBoundedUnderConcurrentUse() throws Exception {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(100);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < 4; writer++) {
+                int offset = writer * 10000;
+                writers.add(executor.submit(() -> {
+                    for (int i = offset; i < offset + 10000; i++) {
+                        cache.put(i, i, NEVER);
+                        cache.get(i - 1);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        cache.put(-1, -1, NEVER);
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+        assertThat(cache.get(-1)).isEqualTo(-1);
+    }
+}
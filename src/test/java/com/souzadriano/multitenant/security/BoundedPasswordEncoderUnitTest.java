@@ -0,0 +1,107 @@
+package com.souzadriano.multitenant.security;
+
+import com.codahale.metrics.MetricRegistry;
+import com.souzadriano.multitenant.config.ApplicationProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the BoundedPasswordEncoder.
+ *
+ * @see BoundedPasswordEncoder
+ */
+public class BoundedPasswordEncoderUnitTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private MetricRegistry metricRegistry;
+
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @Before
+    public void setup() {
+        PasswordEncoder blockingEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "encoded:" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encodedPassword.equals("encoded:" + rawPassword);
+            }
+        };
+        ApplicationProperties.Bcrypt properties = new ApplicationProperties.Bcrypt();
+        properties.setThreads(1);
+        properties.setQueueCapacity(1);
+        properties.setRetryAfterSeconds(3);
+        metricRegistry = new MetricRegistry();
+        passwordEncoder = new BoundedPasswordEncoder(blockingEncoder, properties, metricRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        passwordEncoder.shutdown();
+    }
+
+    @Test
+    public void testEncodeAndMatchOnThePool() {
+        release.countDown();
+
+        String encoded = passwordEncoder.encode("password");
+
+        assertThat(encoded).isEqualTo("encoded:password");
+        assertThat(passwordEncoder.matches("password", encoded)).isTrue();
+        assertThat(metricRegistry.timer("security.password-encoder.encode").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.timer("security.password-encoder.matches").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEncodeAllKeepsTheOrder() {
+        release.countDown();
+
+        List<String> encoded = passwordEncoder.encodeAll(Arrays.asList("first", "second", "third"));
+
+        assertThat(encoded).containsExactly("encoded:first", "encoded:second", "encoded:third");
+        assertThat(metricRegistry.timer("security.password-encoder.encode").getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testRejectWhenSaturated() throws Exception {
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> passwordEncoder.encode("first"));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> passwordEncoder.encode("second"));
+        while (metricRegistry.getGauges().get("security.password-encoder.queue-depth").getValue().equals(0)) {
+            Thread.sleep(10);
+        }
+
+        assertThatThrownBy(() -> passwordEncoder.matches("third", "encoded:third"))
+            .isInstanceOf(PasswordEncoderBusyException.class)
+            .hasFieldOrPropertyWithValue("retryAfterSeconds", 3);
+        assertThat(metricRegistry.meter("security.password-encoder.rejected").getCount()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(10, TimeUnit.SECONDS)).isEqualTo("encoded:first");
+        assertThat(queued.get(10, TimeUnit.SECONDS)).isEqualTo("encoded:second");
+    }
+}
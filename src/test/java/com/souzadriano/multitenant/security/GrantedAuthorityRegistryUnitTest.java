@@ -0,0 +1,74 @@
+package com.souzadriano.multitenant.security;
+
+import com.souzadriano.multitenant.domain.Authority;
+import com.souzadriano.multitenant.repository.AuthorityRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the GrantedAuthorityRegistry.
+ *
+ * @see GrantedAuthorityRegistry
+ */
+public class GrantedAuthorityRegistryUnitTest {
+
+    private GrantedAuthorityRegistry grantedAuthorityRegistry;
+
+    @Before
+    public void setup() {
+        Authority admin = new Authority();
+        admin.setName(AuthoritiesConstants.ADMIN);
+        Authority user = new Authority();
+        user.setName(AuthoritiesConstants.USER);
+        AuthorityRepository authorityRepository = Mockito.mock(AuthorityRepository.class);
+        Mockito.when(authorityRepository.findAll()).thenReturn(Arrays.asList(admin, user));
+        grantedAuthorityRegistry = new GrantedAuthorityRegistry(authorityRepository);
+        grantedAuthorityRegistry.registerKnownAuthorities();
+    }
+
+    @Test
+    public void testAuthoritiesAreShared() {
+        GrantedAuthority authority = grantedAuthorityRegistry.get(AuthoritiesConstants.USER);
+
+        assertThat(authority.getAuthority()).isEqualTo(AuthoritiesConstants.USER);
+        assertThat(grantedAuthorityRegistry.get(AuthoritiesConstants.USER)).isSameAs(authority);
+    }
+
+    @Test
+    public void testCombinationsAreSharedAndUnmodifiable() {
+        String claim = AuthoritiesConstants.ADMIN + "," + AuthoritiesConstants.USER;
+
+        List<GrantedAuthority> authorities = grantedAuthorityRegistry.getAll(claim);
+
+        assertThat(authorities).extracting(GrantedAuthority::getAuthority)
+            .containsExactly(AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER);
+        assertThat(authorities.get(0)).isSameAs(grantedAuthorityRegistry.get(AuthoritiesConstants.ADMIN));
+        assertThat(grantedAuthorityRegistry.getAll(claim)).isSameAs(authorities);
+        assertThat(authorities.getClass().getName()).startsWith("java.util.Collections$Unmodifiable");
+    }
+
+    @Test
+    public void testAuthoritiesAreRegisteredOnFirstUseWhenNotLoaded() {
+        AuthorityRepository authorityRepository = Mockito.mock(AuthorityRepository.class);
+        Mockito.when(authorityRepository.findAll()).thenThrow(new IllegalStateException("jhi_authority not found"));
+        GrantedAuthorityRegistry registry = new GrantedAuthorityRegistry(authorityRepository);
+        registry.registerKnownAuthorities();
+
+        GrantedAuthority authority = registry.get(AuthoritiesConstants.ADMIN);
+
+        assertThat(authority.getAuthority()).isEqualTo(AuthoritiesConstants.ADMIN);
+        assertThat(registry.get(AuthoritiesConstants.ADMIN)).isSameAs(authority);
+    }
+
+    @Test
+    public void testEmptyClaimHasNoAuthorities() {
+        assertThat(grantedAuthorityRegistry.getAll("")).isEmpty();
+    }
+}
@@ -0,0 +1,91 @@
+package com.souzadriano.multitenant.security;
+
+import com.souzadriano.multitenant.repository.UserRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test class for the RehashingAuthenticationProvider.
+ *
+ * @see RehashingAuthenticationProvider
+ */
+public class RehashingAuthenticationProviderUnitTest {
+
+    private UserDetailsService userDetailsService;
+
+    private UserRepository userRepository;
+
+    private RehashingAuthenticationProvider authenticationProvider;
+
+    @Before
+    public void setup() {
+        userDetailsService = Mockito.mock(UserDetailsService.class);
+        userRepository = Mockito.mock(UserRepository.class);
+        authenticationProvider = new RehashingAuthenticationProvider(userDetailsService, new BCryptPasswordEncoder(5), 5,
+            userRepository, new SyncTaskExecutor());
+    }
+
+    private void givenStoredPassword(String hash) {
+        Mockito.when(userDetailsService.loadUserByUsername("john"))
+            .thenReturn(new UserDetails("john", hash, Collections.emptyList(), null));
+    }
+
+    @Test
+    public void testRehashPasswordStoredWithALowerCost() {
+        String storedHash = new BCryptPasswordEncoder(4).encode("password");
+        givenStoredPassword(storedHash);
+        Mockito.when(userRepository.updatePasswordIfUnchanged(eq("john"), eq(storedHash), anyString())).thenReturn(1);
+
+        Authentication authentication = authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("john", "password"));
+
+        assertThat(authentication.isAuthenticated()).isTrue();
+        ArgumentCaptor<String> newHash = ArgumentCaptor.forClass(String.class);
+        verify(userRepository).updatePasswordIfUnchanged(eq("john"), eq(storedHash), newHash.capture());
+        assertThat(BcryptStrength.of(newHash.getValue())).isEqualTo(5);
+        assertThat(new BCryptPasswordEncoder().matches("password", newHash.getValue())).isTrue();
+        verify(userDetailsService).evict("john");
+    }
+
+    @Test
+    public void testKeepPasswordStoredWithTheConfiguredCost() {
+        givenStoredPassword(new BCryptPasswordEncoder(5).encode("password"));
+
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("john", "password"));
+
+        verify(userRepository, never()).updatePasswordIfUnchanged(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void testKeepPasswordStoredWithAHigherCost() {
+        givenStoredPassword(new BCryptPasswordEncoder(6).encode("password"));
+
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("john", "password"));
+
+        verify(userRepository, never()).updatePasswordIfUnchanged(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void testNoRehashOnBadCredentials() {
+        givenStoredPassword(new BCryptPasswordEncoder(4).encode("password"));
+
+        assertThatThrownBy(() -> authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("john", "wrong")))
+            .isInstanceOf(BadCredentialsException.class);
+        verify(userRepository, never()).updatePasswordIfUnchanged(anyString(), anyString(), anyString());
+    }
+}
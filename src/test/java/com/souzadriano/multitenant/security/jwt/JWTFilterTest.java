@@ -1,9 +1,15 @@
 package com.souzadriano.multitenant.security.jwt;
 
+import com.souzadriano.multitenant.config.ApplicationProperties;
+import com.souzadriano.multitenant.config.multitenant.TenantContextHolder;
+import com.souzadriano.multitenant.repository.AuthorityRepository;
 import com.souzadriano.multitenant.security.AuthoritiesConstants;
+import com.souzadriano.multitenant.security.GrantedAuthorityRegistry;
+import com.souzadriano.multitenant.security.UserDetails;
 import io.github.jhipster.config.JHipsterProperties;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
 import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockFilterChain;
 import org.springframework.mock.web.MockHttpServletRequest;
@@ -14,6 +20,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -27,8 +34,10 @@ public class JWTFilterTest {
     @Before
     public void setup() {
         JHipsterProperties jHipsterProperties = new JHipsterProperties();
-        tokenProvider = new TokenProvider(jHipsterProperties);
-        ReflectionTestUtils.setField(tokenProvider, "secretKey", "test secret");
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setSecret("test secret");
+        tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(),
+            new GrantedAuthorityRegistry(Mockito.mock(AuthorityRepository.class)));
+        tokenProvider.init();
         ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", 60000);
         jwtFilter = new JWTFilter(tokenProvider);
         SecurityContextHolder.getContext().setAuthentication(null);
@@ -53,6 +62,26 @@ public class JWTFilterTest {
         assertThat(SecurityContextHolder.getContext().getAuthentication().getCredentials().toString()).isEqualTo(jwt);
     }
 
+    @Test
+    public void testJWTFilterSetsTenantForTheRequest() throws Exception {
+        UserDetails principal = new UserDetails("test-user", "test-password",
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER)), "tenant-1");
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+            principal,
+            "test-password",
+            principal.getAuthorities()
+        );
+        String jwt = tokenProvider.createToken(authentication, false);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(JWTConfigurer.AUTHORIZATION_HEADER, "Bearer " + jwt);
+        request.setRequestURI("/api/test");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> tenantInChain = new AtomicReference<>();
+        jwtFilter.doFilter(request, response, (req, res) -> tenantInChain.set(TenantContextHolder.getTenantId()));
+        assertThat(tenantInChain.get()).isEqualTo("tenant-1");
+        assertThat(TenantContextHolder.getTenantId()).isNull();
+    }
+
     @Test
     public void testJWTFilterInvalidToken() throws Exception {
         String jwt = "wrong_jwt";
@@ -1,36 +1,48 @@
 package com.souzadriano.multitenant.security.jwt;
 
+import com.souzadriano.multitenant.config.ApplicationProperties;
+import com.souzadriano.multitenant.repository.AuthorityRepository;
 import com.souzadriano.multitenant.security.AuthoritiesConstants;
+import com.souzadriano.multitenant.security.GrantedAuthorityRegistry;
 import io.github.jhipster.config.JHipsterProperties;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.DefaultJwsHeader;
+import io.jsonwebtoken.impl.TextCodec;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.springframework.boot.json.JacksonJsonParser;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class TokenProviderTest {
 
     private final String secretKey = "e5c9ee274ae87bc031adda32e27fa98b9290da83";
     private final long ONE_MINUTE = 60000;
+    private static final String KEYS = "classpath:config/jwt/test-keys.p12";
+    private static final String CERTIFICATES = "classpath:config/jwt/test-certificates.p12";
     private JHipsterProperties jHipsterProperties;
     private TokenProvider tokenProvider;
 
     @Before
     public void setup() {
-        jHipsterProperties = Mockito.mock(JHipsterProperties.class);
-        tokenProvider = new TokenProvider(jHipsterProperties);
-        ReflectionTestUtils.setField(tokenProvider, "secretKey", secretKey);
+        jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setSecret(secretKey);
+        tokenProvider = createTokenProvider(new ApplicationProperties());
         ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", ONE_MINUTE);
     }
 
@@ -79,6 +91,126 @@ public class TokenProviderTest {
         assertThat(isTokenValid).isEqualTo(false);
     }
 
+    @Test
+    public void testGetValidAuthenticationReusesVerifiedToken() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        Authentication authentication = tokenProvider.getValidAuthentication(token);
+
+        assertThat(authentication.getName()).isEqualTo("anonymous");
+        assertThat(authentication.getCredentials()).isEqualTo(token);
+        authentication.setAuthenticated(false);
+        Authentication cached = tokenProvider.getValidAuthentication(token);
+        assertThat(cached).isNotSameAs(authentication);
+        assertThat(cached.isAuthenticated()).isTrue();
+        assertThat(cached.getName()).isEqualTo("anonymous");
+        assertThat(cached.getAuthorities()).isEqualTo(authentication.getAuthorities());
+    }
+
+    @Test
+    public void testGetValidAuthenticationReturnsNullWhenJWThasInvalidSignature() {
+        Authentication authentication = tokenProvider.getValidAuthentication(createTokenWithDifferentSignature());
+
+        assertThat(authentication).isNull();
+    }
+
+    @Test
+    public void testKeyStoreTokenIsValid() {
+        TokenProvider rsaTokenProvider = createKeyStoreTokenProvider(KEYS, "key-1");
+        String token = rsaTokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(getHeader(token).getAlgorithm()).isEqualTo(SignatureAlgorithm.RS256.getValue());
+        assertThat(getHeader(token).getKeyId()).isEqualTo("key-1");
+        assertThat(rsaTokenProvider.validateToken(token)).isTrue();
+        assertThat(rsaTokenProvider.getValidAuthentication(token).getName()).isEqualTo("anonymous");
+    }
+
+    @Test
+    public void testRotatedKeyStillVerifiesPreviousTokens() {
+        String rsaToken = createKeyStoreTokenProvider(KEYS, "key-1").createToken(createAuthentication(), false);
+        TokenProvider ecTokenProvider = createKeyStoreTokenProvider(KEYS, "key-2");
+        String ecToken = ecTokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(getHeader(ecToken).getAlgorithm()).isEqualTo(SignatureAlgorithm.ES256.getValue());
+        assertThat(ecTokenProvider.validateToken(ecToken)).isTrue();
+        assertThat(ecTokenProvider.validateToken(rsaToken)).isTrue();
+    }
+
+    @Test
+    public void testEllipticCurveKeySignsWithTheAlgorithmOfItsCurve() {
+        TokenProvider p384TokenProvider = createKeyStoreTokenProvider(KEYS, "key-p384");
+        String p384Token = p384TokenProvider.createToken(createAuthentication(), false);
+        TokenProvider p521TokenProvider = createKeyStoreTokenProvider(KEYS, "key-p521");
+        String p521Token = p521TokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(getHeader(p384Token).getAlgorithm()).isEqualTo(SignatureAlgorithm.ES384.getValue());
+        assertThat(p384TokenProvider.validateToken(p384Token)).isTrue();
+        assertThat(getHeader(p521Token).getAlgorithm()).isEqualTo(SignatureAlgorithm.ES512.getValue());
+        assertThat(p521TokenProvider.validateToken(p521Token)).isTrue();
+    }
+
+    @Test
+    public void testCertificatesOnlyVerifyTokens() {
+        String token = createKeyStoreTokenProvider(KEYS, "key-1").createToken(createAuthentication(), false);
+        TokenProvider verifyingTokenProvider = createKeyStoreTokenProvider(CERTIFICATES, null);
+
+        assertThat(verifyingTokenProvider.validateToken(token)).isTrue();
+        assertThatThrownBy(() -> verifyingTokenProvider.createToken(createAuthentication(), false))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testKeyStoreRejectsHS512Token() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(createKeyStoreTokenProvider(CERTIFICATES, null).validateToken(token)).isFalse();
+    }
+
+    @Test
+    public void testKeyStoreRejectsUnknownKeyId() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        String unknownKeyToken = Jwts.builder()
+            .setHeaderParam(JwsHeader.KEY_ID, "key-3")
+            .setSubject("anonymous")
+            .signWith(SignatureAlgorithm.RS256, keyPair.getPrivate())
+            .setExpiration(new Date(new Date().getTime() + ONE_MINUTE))
+            .compact();
+        String wrongKeyToken = Jwts.builder()
+            .setHeaderParam(JwsHeader.KEY_ID, "key-1")
+            .setSubject("anonymous")
+            .signWith(SignatureAlgorithm.RS256, keyPair.getPrivate())
+            .setExpiration(new Date(new Date().getTime() + ONE_MINUTE))
+            .compact();
+        TokenProvider verifyingTokenProvider = createKeyStoreTokenProvider(CERTIFICATES, null);
+
+        assertThat(verifyingTokenProvider.validateToken(unknownKeyToken)).isFalse();
+        assertThat(verifyingTokenProvider.validateToken(wrongKeyToken)).isFalse();
+    }
+
+    private TokenProvider createTokenProvider(ApplicationProperties applicationProperties) {
+        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, applicationProperties,
+            new GrantedAuthorityRegistry(Mockito.mock(AuthorityRepository.class)));
+        tokenProvider.init();
+        return tokenProvider;
+    }
+
+    private TokenProvider createKeyStoreTokenProvider(String keyStore, String keyAlias) {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getJwt().setKeyStore(keyStore);
+        applicationProperties.getJwt().setKeyStorePassword("password");
+        applicationProperties.getJwt().setKeyAlias(keyAlias);
+        TokenProvider keyStoreTokenProvider = createTokenProvider(applicationProperties);
+        ReflectionTestUtils.setField(keyStoreTokenProvider, "tokenValidityInMilliseconds", ONE_MINUTE);
+        return keyStoreTokenProvider;
+    }
+
+    private JwsHeader getHeader(String token) {
+        String header = token.substring(0, token.indexOf('.'));
+        return new DefaultJwsHeader(new JacksonJsonParser().parseMap(TextCodec.BASE64URL.decodeToString(header)));
+    }
+
     private Authentication createAuthentication() {
         Collection<GrantedAuthority> authorities = new ArrayList<>();
         authorities.add(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS));
@@ -0,0 +1,126 @@
+package com.souzadriano.multitenant.service;
+
+import com.souzadriano.multitenant.MultitenantApp;
+import com.souzadriano.multitenant.config.ApplicationProperties;
+import com.souzadriano.multitenant.domain.PersistentAuditEvent;
+import com.souzadriano.multitenant.repository.PersistenceAuditEventRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the AuditEventRetentionService, on the default tenant database.
+ *
+ * @see AuditEventRetentionService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MultitenantApp.class)
+public class AuditEventRetentionServiceIntTest {
+
+    @Autowired
+    private AuditEventRetentionService auditEventRetentionService;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setup() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        persistenceAuditEventRepository.deleteAll();
+        applicationProperties.getAudit().setRetentionChunkSize(2);
+        for (int i = 0; i < 5; i++) {
+            persistenceAuditEventRepository.save(event("expired-" + i, Instant.now().minus(40, ChronoUnit.DAYS)));
+        }
+        persistenceAuditEventRepository.save(event("recent", Instant.now().minus(1, ChronoUnit.DAYS)));
+    }
+
+    @After
+    public void tearDown() {
+        ApplicationProperties.Audit defaults = new ApplicationProperties.Audit();
+        applicationProperties.getAudit().setRetentionChunkSize(defaults.getRetentionChunkSize());
+        applicationProperties.getAudit().setArchive(defaults.isArchive());
+        applicationProperties.getAudit().setRetentionDays(defaults.getRetentionDays());
+        jdbcTemplate.update("UPDATE mt_scheduled_lock SET locked_until = ?, locked_by = NULL WHERE name = 'audit-retention'",
+            Timestamp.from(Instant.EPOCH));
+        persistenceAuditEventRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM jhi_persistent_audit_evt_data_archive");
+        jdbcTemplate.update("DELETE FROM jhi_persistent_audit_event_archive");
+    }
+
+    private static PersistentAuditEvent event(String principal, Instant date) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(principal);
+        event.setAuditEventType("AUTHENTICATION_SUCCESS");
+        event.setAuditEventDate(date);
+        event.setData(Collections.singletonMap("remoteAddress", "127.0.0.1"));
+        return event;
+    }
+
+    @Test
+    public void testPurgeDeletesExpiredEventsInChunks() {
+        long purged = auditEventRetentionService.purge("default", 30);
+
+        assertThat(purged).isEqualTo(5);
+        assertThat(persistenceAuditEventRepository.findAll())
+            .extracting(PersistentAuditEvent::getPrincipal).containsExactly("recent");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM jhi_persistent_audit_evt_data", Long.class))
+            .isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM jhi_persistent_audit_event_archive", Long.class))
+            .isEqualTo(0);
+    }
+
+    @Test
+    public void testPurgeArchivesExpiredEvents() {
+        applicationProperties.getAudit().setArchive(true);
+
+        long purged = auditEventRetentionService.purge("default", 30);
+
+        assertThat(purged).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForList("SELECT principal FROM jhi_persistent_audit_event_archive ORDER BY event_id",
+            String.class)).containsExactly("expired-0", "expired-1", "expired-2", "expired-3", "expired-4");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM jhi_persistent_audit_evt_data_archive", Long.class))
+            .isEqualTo(5);
+        assertThat(persistenceAuditEventRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPurgeAllKeepsEventsWithoutRetention() throws Exception {
+        assertThat(auditEventRetentionService.purgeAll()).doesNotContainKey("default");
+        assertThat(persistenceAuditEventRepository.count()).isEqualTo(6);
+    }
+
+    @Test
+    public void testNightlyPurgeRunsOnASingleNode() throws Exception {
+        applicationProperties.getAudit().setRetentionDays(30);
+
+        auditEventRetentionService.removeExpiredEvents();
+        persistenceAuditEventRepository.save(event("expired-again", Instant.now().minus(40, ChronoUnit.DAYS)));
+        auditEventRetentionService.removeExpiredEvents();
+
+        // The second run finds the lock taken, as another node would
+        assertThat(persistenceAuditEventRepository.findAll())
+            .extracting(PersistentAuditEvent::getPrincipal).containsOnly("recent", "expired-again");
+        assertThat(auditEventRetentionService.acquireLock()).isFalse();
+    }
+}
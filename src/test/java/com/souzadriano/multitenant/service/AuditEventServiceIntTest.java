@@ -0,0 +1,114 @@
+package com.souzadriano.multitenant.service;
+
+import com.souzadriano.multitenant.MultitenantApp;
+import com.souzadriano.multitenant.domain.PersistentAuditEvent;
+import com.souzadriano.multitenant.repository.PersistenceAuditEventRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the number of queries of the AuditEventService listings.
+ *
+ * @see AuditEventService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MultitenantApp.class)
+public class AuditEventServiceIntTest {
+
+    @Autowired
+    private AuditEventService auditEventService;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        persistenceAuditEventRepository.deleteAll();
+        for (int i = 0; i < 10; i++) {
+            PersistentAuditEvent event = new PersistentAuditEvent();
+            event.setPrincipal("principal-" + i);
+            event.setAuditEventType("AUTHENTICATION_SUCCESS");
+            event.setAuditEventDate(Instant.now().minus(i, ChronoUnit.MINUTES));
+            Map<String, String> data = new HashMap<>();
+            data.put("remoteAddress", "127.0.0.1");
+            data.put("sessionId", "session-" + i);
+            event.setData(data);
+            persistenceAuditEventRepository.save(event);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        persistenceAuditEventRepository.deleteAll();
+    }
+
+    private long countStatements(Supplier<?> query) {
+        long statements = statistics.getPrepareStatementCount();
+        query.get();
+        return statistics.getPrepareStatementCount() - statements;
+    }
+
+    @Test
+    public void assertThatPagesAreReadWithConstantStatements() {
+        Page<AuditEvent> page = auditEventService.findAll(new PageRequest(0, 10));
+        assertThat(page.getContent()).extracting(event -> event.getData().get("sessionId"))
+            .containsExactly("session-0", "session-1", "session-2", "session-3", "session-4", "session-5", "session-6",
+                "session-7", "session-8", "session-9");
+
+        long smallPage = countStatements(() -> auditEventService.findAll(new PageRequest(0, 2)));
+        long largePage = countStatements(() -> auditEventService.findAll(new PageRequest(0, 8)));
+
+        // The events, their data and the count, which does not join the data
+        assertThat(smallPage).isEqualTo(3);
+        assertThat(largePage).isEqualTo(smallPage);
+    }
+
+    @Test
+    public void assertThatDatePagesAreReadWithConstantStatements() {
+        Instant from = Instant.now().minus(1, ChronoUnit.DAYS);
+        Instant to = Instant.now().plus(1, ChronoUnit.DAYS);
+
+        long smallPage = countStatements(() -> auditEventService.findByDates(from, to, new PageRequest(0, 2)));
+        long largePage = countStatements(() -> auditEventService.findByDates(from, to, new PageRequest(0, 8)));
+
+        assertThat(smallPage).isEqualTo(3);
+        assertThat(largePage).isEqualTo(smallPage);
+    }
+
+    @Test
+    public void assertThatKeysetPagesAreReadWithConstantStatements() {
+        long smallPage = countStatements(() -> auditEventService.findAllBefore(null, 2));
+        long largePage = countStatements(() -> auditEventService.findAllBefore(null, 8));
+
+        // The events and their data, the keyset pages are not counted
+        assertThat(smallPage).isEqualTo(2);
+        assertThat(largePage).isEqualTo(smallPage);
+        assertThat(auditEventService.findAllBefore(null, 8).getContent())
+            .extracting(event -> event.getData().size()).containsOnly(2);
+    }
+}
@@ -0,0 +1,102 @@
+package com.souzadriano.multitenant.service;
+
+import com.souzadriano.multitenant.domain.User;
+import com.souzadriano.multitenant.repository.AuthorityRepository;
+import com.souzadriano.multitenant.repository.UserRepository;
+import com.souzadriano.multitenant.security.BoundedPasswordEncoder;
+import com.souzadriano.multitenant.service.dto.UserImportResultDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import javax.validation.Validation;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the failures of the UserImportService saves and creation emails.
+ *
+ * @see UserImportService
+ */
+public class UserImportServiceUnitTest {
+
+    private static final String ROWS = "{\"login\":\"first\",\"email\":\"first@localhost\"}\n" +
+        "{\"login\":\"taken\",\"email\":\"taken@localhost\"}\n" +
+        "{\"login\":\"third\",\"email\":\"third@localhost\",\"password\":\"password\"}\n";
+
+    private UserRepository userRepository;
+
+    private MailService mailService;
+
+    private UserImportService userImportService;
+
+    @Before
+    public void setup() {
+        userRepository = Mockito.mock(UserRepository.class);
+        mailService = Mockito.mock(MailService.class);
+        AuthorityRepository authorityRepository = Mockito.mock(AuthorityRepository.class);
+        BoundedPasswordEncoder passwordEncoder = Mockito.mock(BoundedPasswordEncoder.class);
+        when(passwordEncoder.encodeAll(anyListOf(String.class)))
+            .thenAnswer(invocation -> new ArrayList<>(Collections.nCopies(3, "hash")));
+        userImportService = new UserImportService(userRepository, authorityRepository, passwordEncoder, mailService,
+            new ObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator());
+    }
+
+    private List<UserImportResultDTO> importRows() throws Exception {
+        List<UserImportResultDTO> results = new ArrayList<>();
+        userImportService.importUsers(new StringReader(ROWS), UserImportService.Format.NDJSON, results::addAll);
+        return results;
+    }
+
+    @Test
+    public void testOnlyConflictingRowsFail() throws Exception {
+        when(userRepository.save(anyListOf(User.class))).thenThrow(new DataIntegrityViolationException("ux_user_login"));
+        when(userRepository.save(argThat(new UserWithLogin("taken")))).thenThrow(new DataIntegrityViolationException("ux_user_login"));
+
+        List<UserImportResultDTO> results = importRows();
+
+        assertThat(results).extracting(UserImportResultDTO::getStatus).containsExactly(
+            UserImportResultDTO.Status.CREATED, UserImportResultDTO.Status.FAILED, UserImportResultDTO.Status.CREATED);
+        assertThat(results).extracting(UserImportResultDTO::getError).containsExactly(null, "conflict", null);
+        Mockito.verify(mailService).sendCreationEmail(argThat(new UserWithLogin("first")));
+        Mockito.verify(mailService, Mockito.never()).sendCreationEmail(argThat(new UserWithLogin("taken")));
+    }
+
+    @Test
+    public void testRejectedCreationEmailIsReportedOnItsRow() throws Exception {
+        doThrow(new TaskRejectedException("queue full")).when(mailService).sendCreationEmail(any(User.class));
+
+        List<UserImportResultDTO> results = importRows();
+
+        assertThat(results).extracting(UserImportResultDTO::getStatus).containsOnly(UserImportResultDTO.Status.CREATED);
+        assertThat(results).extracting(UserImportResultDTO::getError).containsExactly("mail", "mail", null);
+        assertThat(results).extracting(UserImportResultDTO::getLine).isEqualTo(Arrays.asList(1L, 2L, 3L));
+    }
+
+    private static class UserWithLogin extends org.mockito.ArgumentMatcher<User> {
+
+        private final String login;
+
+        UserWithLogin(String login) {
+            this.login = login;
+        }
+
+        @Override
+        public boolean matches(Object argument) {
+            return argument instanceof User && login.equals(((User) argument).getLogin());
+        }
+    }
+}
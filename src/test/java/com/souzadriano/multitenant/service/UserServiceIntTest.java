@@ -4,8 +4,14 @@ import com.souzadriano.multitenant.MultitenantApp;
 import com.souzadriano.multitenant.domain.User;
 import com.souzadriano.multitenant.config.Constants;
 import com.souzadriano.multitenant.repository.UserRepository;
+import com.souzadriano.multitenant.security.AuthoritiesConstants;
+import com.souzadriano.multitenant.security.UserDetails;
+import com.souzadriano.multitenant.security.UserDetailsService;
+import com.souzadriano.multitenant.security.UserNotActivatedException;
 import com.souzadriano.multitenant.service.dto.UserDTO;
 import com.souzadriano.multitenant.service.util.RandomUtil;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,9 +21,12 @@ import org.springframework.test.context.junit4.SpringRunner;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
+import javax.persistence.EntityManagerFactory;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.List;
 
@@ -39,6 +48,12 @@ public class UserServiceIntTest {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Test
     public void assertThatUserMustExistToResetPassword() {
         Optional<User> maybeUser = userService.requestPasswordReset("john.doe@localhost");
@@ -129,6 +144,24 @@ public class UserServiceIntTest {
             .isTrue();
     }
 
+    @Test
+    public void assertThatManagedUsersAreReadWithoutLoadingEntities() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long statements = statistics.getPrepareStatementCount();
+        long loads = statistics.getEntityLoadCount();
+        long fetches = statistics.getCollectionFetchCount();
+
+        Page<UserDTO> page = userService.getAllManagedUsers(new PageRequest(0, 10, Sort.Direction.ASC, "login"));
+
+        assertThat(page.getContent()).extracting("login").containsExactly("admin", "system", "user");
+        assertThat(page.getContent().get(0).getAuthorities()).containsOnly(AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER);
+        assertThat(page.getContent().get(2).getAuthorities()).containsOnly(AuthoritiesConstants.USER);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(loads);
+        assertThat(statistics.getCollectionFetchCount()).isEqualTo(fetches);
+        // The page, at most its count, and the authorities of all its users
+        assertThat(statistics.getPrepareStatementCount() - statements).isLessThanOrEqualTo(3);
+    }
+
     @Test
     public void testRemoveNotActivatedUsers() {
         User user = userService.createUser("johndoe", "johndoe", "John", "Doe", "john.doe@localhost", "http://placehold.it/50x50", "en-US");
@@ -139,4 +172,37 @@ public class UserServiceIntTest {
         userService.removeNotActivatedUsers();
         assertThat(userRepository.findOneByLogin("johndoe")).isNotPresent();
     }
+
+    @Test
+    public void assertThatCachedUserDetailsKeepTheirPassword() {
+        User user = userService.createUser("johndoe", "johndoe", "John", "Doe", "john.doe@localhost", "http://placehold.it/50x50", "en-US");
+        user.setActivated(true);
+        userRepository.saveAndFlush(user);
+
+        UserDetails first = (UserDetails) userDetailsService.loadUserByUsername("JohnDoe");
+        first.eraseCredentials();
+        UserDetails second = (UserDetails) userDetailsService.loadUserByUsername("johndoe");
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getPassword()).isEqualTo(user.getPassword());
+        userService.deleteUser("johndoe");
+    }
+
+    @Test
+    public void assertThatUpdateUserEvictsCachedUserDetails() {
+        User user = userService.createUser("johndoe", "johndoe", "John", "Doe", "john.doe@localhost", "http://placehold.it/50x50", "en-US");
+        user.setActivated(true);
+        userRepository.saveAndFlush(user);
+        assertThat(userDetailsService.loadUserByUsername("johndoe").getAuthorities()).hasSize(1);
+
+        UserDTO userDTO = new UserDTO(user.getId(), user.getLogin(), user.getFirstName(), user.getLastName(),
+            user.getEmail(), false, user.getImageUrl(), user.getLangKey(), null, null, null, null,
+            Collections.singleton(AuthoritiesConstants.USER));
+        userService.updateUser(userDTO);
+        userRepository.flush();
+
+        assertThatThrownBy(() -> userDetailsService.loadUserByUsername("johndoe"))
+            .isInstanceOf(UserNotActivatedException.class);
+        userService.deleteUser("johndoe");
+    }
 }
@@ -4,7 +4,10 @@ import com.souzadriano.multitenant.MultitenantApp;
 import com.souzadriano.multitenant.config.audit.AuditEventConverter;
 import com.souzadriano.multitenant.domain.PersistentAuditEvent;
 import com.souzadriano.multitenant.repository.PersistenceAuditEventRepository;
+import com.souzadriano.multitenant.service.AuditEventExportService;
 import com.souzadriano.multitenant.service.AuditEventService;
+import com.souzadriano.multitenant.web.rest.errors.ErrorConstants;
+import com.souzadriano.multitenant.web.rest.errors.ExceptionTranslator;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -13,6 +16,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.format.support.FormattingConversionService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -22,8 +26,15 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -41,6 +52,7 @@ public class AuditResourceIntTest {
     private static final String SAMPLE_TYPE = "SAMPLE_TYPE";
     private static final Instant SAMPLE_TIMESTAMP = Instant.parse("2015-08-04T10:11:30Z");
     private static final long SECONDS_PER_DAY = 60*60*24;
+    private static final Pattern NEXT_LINK = Pattern.compile("<([^>]*)>; rel=\"next\"");
 
     @Autowired
     private PersistenceAuditEventRepository auditEventRepository;
@@ -57,6 +69,12 @@ public class AuditResourceIntTest {
     @Autowired
     private PageableHandlerMethodArgumentResolver pageableArgumentResolver;
 
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private AuditEventExportService auditEventExportService;
+
     private PersistentAuditEvent auditEvent;
 
     private MockMvc restAuditMockMvc;
@@ -66,10 +84,12 @@ public class AuditResourceIntTest {
         MockitoAnnotations.initMocks(this);
         AuditEventService auditEventService =
             new AuditEventService(auditEventRepository, auditEventConverter);
-        AuditResource auditResource = new AuditResource(auditEventService);
+        AuditResource auditResource = new AuditResource(auditEventService, auditEventExportService,
+            jacksonMessageConverter.getObjectMapper());
         this.restAuditMockMvc = MockMvcBuilders.standaloneSetup(auditResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setConversionService(formattingConversionService)
+            .setControllerAdvice(exceptionTranslator)
             .setMessageConverters(jacksonMessageConverter).build();
     }
 
@@ -138,10 +158,115 @@ public class AuditResourceIntTest {
             .andExpect(header().string("X-Total-Count", "0"));
     }
 
+    @Test
+    public void getAuditsAfterCursor() throws Exception {
+        // Initialize the database
+        for (int i = 0; i < 3; i++) {
+            PersistentAuditEvent event = new PersistentAuditEvent();
+            event.setAuditEventType(SAMPLE_TYPE);
+            event.setPrincipal(SAMPLE_PRINCIPAL + i);
+            event.setAuditEventDate(SAMPLE_TIMESTAMP.plusSeconds(i));
+            auditEventRepository.save(event);
+        }
+
+        // Get the first page, newest first
+        String link = restAuditMockMvc.perform(get("/management/audits?cursor=&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].principal").value(contains(SAMPLE_PRINCIPAL + 2, SAMPLE_PRINCIPAL + 1)))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+        Matcher next = NEXT_LINK.matcher(link);
+        assertThat(next.find()).isTrue();
+
+        // Get the last page
+        restAuditMockMvc.perform(get(next.group(1)).param("count", "true"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].principal").value(contains(SAMPLE_PRINCIPAL + 0)))
+            .andExpect(header().string("X-Total-Count", "3"))
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))));
+    }
+
+    @Test
+    public void getAuditsAfterInvalidCursor() throws Exception {
+        restAuditMockMvc.perform(get("/management/audits?cursor=bm90LWFuLWlk"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value(ErrorConstants.ERR_INVALID_CURSOR));
+    }
+
     @Test
     public void getNonExistingAudit() throws Exception {
         // Get the audit
         restAuditMockMvc.perform(get("/management/audits/{id}", Long.MAX_VALUE))
             .andExpect(status().isNotFound());
     }
+
+    private void saveExportSamples() {
+        for (int i = 0; i < 3; i++) {
+            PersistentAuditEvent event = new PersistentAuditEvent();
+            event.setAuditEventType(i == 1 ? "OTHER_TYPE" : SAMPLE_TYPE);
+            event.setPrincipal(SAMPLE_PRINCIPAL);
+            event.setAuditEventDate(SAMPLE_TIMESTAMP.plusSeconds(i * SECONDS_PER_DAY));
+            event.setData(Collections.singletonMap("message", "event " + i));
+            auditEventRepository.save(event);
+        }
+        auditEventRepository.flush();
+    }
+
+    @Test
+    public void exportAuditsAsNdjson() throws Exception {
+        saveExportSamples();
+
+        String body = restAuditMockMvc.perform(get("/management/audits/export")
+            .param("principal", SAMPLE_PRINCIPAL)
+            .param("type", SAMPLE_TYPE))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(UserResource.APPLICATION_NDJSON_VALUE))
+            .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(jacksonMessageConverter.getObjectMapper().readTree(lines[0]).get("data").get("message").asText())
+            .isEqualTo("event 0");
+        assertThat(jacksonMessageConverter.getObjectMapper().readTree(lines[1]).get("data").get("message").asText())
+            .isEqualTo("event 2");
+    }
+
+    @Test
+    public void exportAuditsByDateAsCsv() throws Exception {
+        saveExportSamples();
+        String fromDate = SAMPLE_TIMESTAMP.plusSeconds(SECONDS_PER_DAY).toString().substring(0, 10);
+        String toDate = SAMPLE_TIMESTAMP.plusSeconds(2 * SECONDS_PER_DAY).toString().substring(0, 10);
+
+        String body = restAuditMockMvc.perform(get("/management/audits/export")
+            .accept(UserResource.TEXT_CSV_VALUE)
+            .param("fromDate", fromDate)
+            .param("toDate", toDate)
+            .param("principal", SAMPLE_PRINCIPAL))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(UserResource.TEXT_CSV_VALUE))
+            .andReturn().getResponse().getContentAsString();
+
+        assertThat(body.split("\n")).containsExactly(
+            "timestamp,principal,type,data",
+            SAMPLE_TIMESTAMP.plusSeconds(SECONDS_PER_DAY) + "," + SAMPLE_PRINCIPAL + ",OTHER_TYPE,\"{\"\"message\"\":\"\"event 1\"\"}\"",
+            SAMPLE_TIMESTAMP.plusSeconds(2 * SECONDS_PER_DAY) + "," + SAMPLE_PRINCIPAL + "," + SAMPLE_TYPE + ",\"{\"\"message\"\":\"\"event 2\"\"}\"");
+    }
+
+    @Test
+    public void exportAuditsSkipsEventsWithoutDate() throws Exception {
+        saveExportSamples();
+        PersistentAuditEvent undated = new PersistentAuditEvent();
+        undated.setAuditEventType(SAMPLE_TYPE);
+        undated.setPrincipal(SAMPLE_PRINCIPAL);
+        undated.setData(Collections.singletonMap("message", "undated"));
+        auditEventRepository.saveAndFlush(undated);
+
+        String body = restAuditMockMvc.perform(get("/management/audits/export")
+            .param("principal", SAMPLE_PRINCIPAL))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+
+        assertThat(body.split("\n")).hasSize(3);
+        assertThat(body).doesNotContain("undated");
+    }
 }
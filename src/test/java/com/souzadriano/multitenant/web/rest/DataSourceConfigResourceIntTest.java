@@ -2,6 +2,8 @@ package com.souzadriano.multitenant.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -17,9 +19,12 @@ import javax.persistence.EntityManager;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
@@ -29,6 +34,7 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.souzadriano.multitenant.MultitenantApp;
+import com.souzadriano.multitenant.config.multitenant.DataSourceConfigChangedEvent;
 import com.souzadriano.multitenant.domain.DataSourceConfig;
 import com.souzadriano.multitenant.repository.DataSourceConfigRepository;
 import com.souzadriano.multitenant.web.rest.errors.ExceptionTranslator;
@@ -59,6 +65,24 @@ public class DataSourceConfigResourceIntTest {
     private static final Boolean DEFAULT_INITIALIZE = false;
     private static final Boolean UPDATED_INITIALIZE = true;
 
+    private static final Integer DEFAULT_MAXIMUM_POOL_SIZE = 1;
+    private static final Integer UPDATED_MAXIMUM_POOL_SIZE = 2;
+
+    private static final Integer DEFAULT_MINIMUM_IDLE = 0;
+    private static final Integer UPDATED_MINIMUM_IDLE = 1;
+
+    private static final Long DEFAULT_CONNECTION_TIMEOUT = 250L;
+    private static final Long UPDATED_CONNECTION_TIMEOUT = 251L;
+
+    private static final Long DEFAULT_MAX_LIFETIME = 0L;
+    private static final Long UPDATED_MAX_LIFETIME = 1L;
+
+    private static final String DEFAULT_DATA_SOURCE_PROPERTIES = "AAAAAAAAAA";
+    private static final String UPDATED_DATA_SOURCE_PROPERTIES = "BBBBBBBBBB";
+
+    private static final Integer DEFAULT_AUDIT_RETENTION_DAYS = 1;
+    private static final Integer UPDATED_AUDIT_RETENTION_DAYS = 2;
+
     @Autowired
     private DataSourceConfigRepository dataSourceConfigRepository;
 
@@ -74,6 +98,9 @@ public class DataSourceConfigResourceIntTest {
     @Autowired
     private EntityManager em;
 
+    @Mock
+    private ApplicationEventPublisher mockEventPublisher;
+
     private MockMvc restDataSourceConfigMockMvc;
 
     private DataSourceConfig dataSourceConfig;
@@ -81,7 +108,7 @@ public class DataSourceConfigResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        DataSourceConfigResource dataSourceConfigResource = new DataSourceConfigResource(dataSourceConfigRepository);
+        DataSourceConfigResource dataSourceConfigResource = new DataSourceConfigResource(dataSourceConfigRepository, mockEventPublisher);
         this.restDataSourceConfigMockMvc = MockMvcBuilders.standaloneSetup(dataSourceConfigResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -100,7 +127,13 @@ public class DataSourceConfigResourceIntTest {
             .url(DEFAULT_URL)
             .username(DEFAULT_USERNAME)
             .password(DEFAULT_PASSWORD)
-            .initialize(DEFAULT_INITIALIZE);
+            .initialize(DEFAULT_INITIALIZE)
+            .maximumPoolSize(DEFAULT_MAXIMUM_POOL_SIZE)
+            .minimumIdle(DEFAULT_MINIMUM_IDLE)
+            .connectionTimeout(DEFAULT_CONNECTION_TIMEOUT)
+            .maxLifetime(DEFAULT_MAX_LIFETIME)
+            .dataSourceProperties(DEFAULT_DATA_SOURCE_PROPERTIES)
+            .auditRetentionDays(DEFAULT_AUDIT_RETENTION_DAYS);
         return dataSourceConfig;
     }
 
@@ -129,6 +162,13 @@ public class DataSourceConfigResourceIntTest {
         assertThat(testDataSourceConfig.getUsername()).isEqualTo(DEFAULT_USERNAME);
         assertThat(testDataSourceConfig.getPassword()).isEqualTo(DEFAULT_PASSWORD);
         assertThat(testDataSourceConfig.isInitialize()).isEqualTo(DEFAULT_INITIALIZE);
+        assertThat(testDataSourceConfig.getMaximumPoolSize()).isEqualTo(DEFAULT_MAXIMUM_POOL_SIZE);
+        assertThat(testDataSourceConfig.getMinimumIdle()).isEqualTo(DEFAULT_MINIMUM_IDLE);
+        assertThat(testDataSourceConfig.getConnectionTimeout()).isEqualTo(DEFAULT_CONNECTION_TIMEOUT);
+        assertThat(testDataSourceConfig.getMaxLifetime()).isEqualTo(DEFAULT_MAX_LIFETIME);
+        assertThat(testDataSourceConfig.getDataSourceProperties()).isEqualTo(DEFAULT_DATA_SOURCE_PROPERTIES);
+        assertThat(testDataSourceConfig.getAuditRetentionDays()).isEqualTo(DEFAULT_AUDIT_RETENTION_DAYS);
+        verify(mockEventPublisher).publishEvent(any(DataSourceConfigChangedEvent.class));
     }
 
     @Test
@@ -256,7 +296,13 @@ public class DataSourceConfigResourceIntTest {
             .andExpect(jsonPath("$.[*].username").value(hasItem(DEFAULT_USERNAME.toString())))
             .andExpect(jsonPath("$.[*].password").value(hasItem(DEFAULT_PASSWORD.toString())))
             .andExpect(jsonPath("$.[*].driverClassName").value(hasItem(DEFAULT_DRIVER_CLASS_NAME.toString())))
-            .andExpect(jsonPath("$.[*].initialize").value(hasItem(DEFAULT_INITIALIZE.booleanValue())));
+            .andExpect(jsonPath("$.[*].initialize").value(hasItem(DEFAULT_INITIALIZE.booleanValue())))
+            .andExpect(jsonPath("$.[*].maximumPoolSize").value(hasItem(DEFAULT_MAXIMUM_POOL_SIZE)))
+            .andExpect(jsonPath("$.[*].minimumIdle").value(hasItem(DEFAULT_MINIMUM_IDLE)))
+            .andExpect(jsonPath("$.[*].connectionTimeout").value(hasItem(DEFAULT_CONNECTION_TIMEOUT.intValue())))
+            .andExpect(jsonPath("$.[*].maxLifetime").value(hasItem(DEFAULT_MAX_LIFETIME.intValue())))
+            .andExpect(jsonPath("$.[*].dataSourceProperties").value(hasItem(DEFAULT_DATA_SOURCE_PROPERTIES.toString())))
+            .andExpect(jsonPath("$.[*].auditRetentionDays").value(hasItem(DEFAULT_AUDIT_RETENTION_DAYS)));
     }
 
     @Test
@@ -275,7 +321,13 @@ public class DataSourceConfigResourceIntTest {
             .andExpect(jsonPath("$.username").value(DEFAULT_USERNAME.toString()))
             .andExpect(jsonPath("$.password").value(DEFAULT_PASSWORD.toString()))
             .andExpect(jsonPath("$.driverClassName").value(DEFAULT_DRIVER_CLASS_NAME.toString()))
-            .andExpect(jsonPath("$.initialize").value(DEFAULT_INITIALIZE.booleanValue()));
+            .andExpect(jsonPath("$.initialize").value(DEFAULT_INITIALIZE.booleanValue()))
+            .andExpect(jsonPath("$.maximumPoolSize").value(DEFAULT_MAXIMUM_POOL_SIZE))
+            .andExpect(jsonPath("$.minimumIdle").value(DEFAULT_MINIMUM_IDLE))
+            .andExpect(jsonPath("$.connectionTimeout").value(DEFAULT_CONNECTION_TIMEOUT.intValue()))
+            .andExpect(jsonPath("$.maxLifetime").value(DEFAULT_MAX_LIFETIME.intValue()))
+            .andExpect(jsonPath("$.dataSourceProperties").value(DEFAULT_DATA_SOURCE_PROPERTIES.toString()))
+            .andExpect(jsonPath("$.auditRetentionDays").value(DEFAULT_AUDIT_RETENTION_DAYS));
     }
 
     @Test
@@ -295,12 +347,20 @@ public class DataSourceConfigResourceIntTest {
 
         // Update the dataSourceConfig
         DataSourceConfig updatedDataSourceConfig = dataSourceConfigRepository.findOne(dataSourceConfig.getId());
+        // Disconnect from session so that the previous name is still the one stored when the resource reads it
+        em.detach(updatedDataSourceConfig);
         updatedDataSourceConfig
             .name(UPDATED_NAME)
             .url(UPDATED_URL)
             .username(UPDATED_USERNAME)
             .password(UPDATED_PASSWORD)
-            .initialize(UPDATED_INITIALIZE);
+            .initialize(UPDATED_INITIALIZE)
+            .maximumPoolSize(UPDATED_MAXIMUM_POOL_SIZE)
+            .minimumIdle(UPDATED_MINIMUM_IDLE)
+            .connectionTimeout(UPDATED_CONNECTION_TIMEOUT)
+            .maxLifetime(UPDATED_MAX_LIFETIME)
+            .dataSourceProperties(UPDATED_DATA_SOURCE_PROPERTIES)
+            .auditRetentionDays(UPDATED_AUDIT_RETENTION_DAYS);
 
         restDataSourceConfigMockMvc.perform(put("/api/data-source-configs")
             .contentType(TestUtil.APPLICATION_JSON_UTF8)
@@ -316,6 +376,17 @@ public class DataSourceConfigResourceIntTest {
         assertThat(testDataSourceConfig.getUsername()).isEqualTo(UPDATED_USERNAME);
         assertThat(testDataSourceConfig.getPassword()).isEqualTo(UPDATED_PASSWORD);
         assertThat(testDataSourceConfig.isInitialize()).isEqualTo(UPDATED_INITIALIZE);
+        assertThat(testDataSourceConfig.getMaximumPoolSize()).isEqualTo(UPDATED_MAXIMUM_POOL_SIZE);
+        assertThat(testDataSourceConfig.getMinimumIdle()).isEqualTo(UPDATED_MINIMUM_IDLE);
+        assertThat(testDataSourceConfig.getConnectionTimeout()).isEqualTo(UPDATED_CONNECTION_TIMEOUT);
+        assertThat(testDataSourceConfig.getMaxLifetime()).isEqualTo(UPDATED_MAX_LIFETIME);
+        assertThat(testDataSourceConfig.getDataSourceProperties()).isEqualTo(UPDATED_DATA_SOURCE_PROPERTIES);
+        assertThat(testDataSourceConfig.getAuditRetentionDays()).isEqualTo(UPDATED_AUDIT_RETENTION_DAYS);
+        ArgumentCaptor<DataSourceConfigChangedEvent> event = ArgumentCaptor.forClass(DataSourceConfigChangedEvent.class);
+        verify(mockEventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getType()).isEqualTo(DataSourceConfigChangedEvent.Type.UPDATED);
+        assertThat(event.getValue().getDataSourceConfig().getName()).isEqualTo(UPDATED_NAME);
+        assertThat(event.getValue().getPreviousName()).isEqualTo(DEFAULT_NAME);
     }
 
     @Test
@@ -351,6 +422,11 @@ public class DataSourceConfigResourceIntTest {
         // Validate the database is empty
         List<DataSourceConfig> dataSourceConfigList = dataSourceConfigRepository.findAll();
         assertThat(dataSourceConfigList).hasSize(databaseSizeBeforeDelete - 1);
+        ArgumentCaptor<DataSourceConfigChangedEvent> event = ArgumentCaptor.forClass(DataSourceConfigChangedEvent.class);
+        verify(mockEventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getType()).isEqualTo(DataSourceConfigChangedEvent.Type.DELETED);
+        assertThat(event.getValue().getPreviousName()).isEqualTo(DEFAULT_NAME);
+        assertThat(event.getValue().getDataSourceConfig().getName()).isEqualTo(DEFAULT_NAME);
     }
 
     @Test
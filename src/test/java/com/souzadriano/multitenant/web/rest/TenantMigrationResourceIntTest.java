@@ -0,0 +1,77 @@
+package com.souzadriano.multitenant.web.rest;
+
+import com.souzadriano.multitenant.MultitenantApp;
+import com.souzadriano.multitenant.config.multitenant.TenantMigration;
+import com.souzadriano.multitenant.config.multitenant.TenantMigrationScheduler;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the TenantMigrationResource REST controller.
+ *
+ * @see TenantMigrationResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MultitenantApp.class)
+public class TenantMigrationResourceIntTest {
+
+    private static final String TENANT_ID = "migration-test";
+
+    @Autowired
+    private TenantMigrationScheduler tenantMigrationScheduler;
+
+    private HikariDataSource tenantDataSource;
+
+    private MockMvc restTenantMigrationMockMvc;
+
+    @Before
+    public void setup() {
+        TenantMigrationResource tenantMigrationResource = new TenantMigrationResource(tenantMigrationScheduler);
+        this.restTenantMigrationMockMvc = MockMvcBuilders
+            .standaloneSetup(tenantMigrationResource)
+            .build();
+
+        tenantDataSource = new HikariDataSource();
+        tenantDataSource.setJdbcUrl("jdbc:h2:mem:" + TENANT_ID + ";DB_CLOSE_DELAY=-1");
+        tenantDataSource.setUsername("sa");
+        tenantDataSource.setMaximumPoolSize(2);
+    }
+
+    @After
+    public void tearDown() {
+        tenantMigrationScheduler.forget(TENANT_ID);
+        tenantDataSource.close();
+    }
+
+    @Test
+    public void getAllTenantMigrations() throws Exception {
+        TenantMigration migration = tenantMigrationScheduler.migrate(TENANT_ID, tenantDataSource);
+        tenantMigrationScheduler.awaitMigration(TENANT_ID, 60, TimeUnit.SECONDS);
+        assertThat(migration.getStatus()).isEqualTo(TenantMigration.Status.DONE);
+        assertThat(migration.getDurationMillis()).isNotNull();
+
+        restTenantMigrationMockMvc.perform(get("/management/tenant-migrations"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.[*].tenantId").value(hasItem(TENANT_ID)))
+            .andExpect(jsonPath("$.[*].status").value(hasItem("DONE")));
+    }
+}
@@ -6,11 +6,14 @@ import com.souzadriano.multitenant.domain.User;
 import com.souzadriano.multitenant.repository.UserRepository;
 import com.souzadriano.multitenant.security.AuthoritiesConstants;
 import com.souzadriano.multitenant.service.MailService;
+import com.souzadriano.multitenant.service.UserImportService;
 import com.souzadriano.multitenant.service.UserService;
 import com.souzadriano.multitenant.service.dto.UserDTO;
 import com.souzadriano.multitenant.service.mapper.UserMapper;
+import com.souzadriano.multitenant.web.rest.errors.ErrorConstants;
 import com.souzadriano.multitenant.web.rest.errors.ExceptionTranslator;
 import com.souzadriano.multitenant.web.rest.vm.ManagedUserVM;
+import com.fasterxml.jackson.core.type.TypeReference;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,25 +22,35 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -73,6 +86,8 @@ public class UserResourceIntTest {
     private static final String DEFAULT_LANGKEY = "en";
     private static final String UPDATED_LANGKEY = "fr";
 
+    private static final Pattern NEXT_LINK = Pattern.compile("<([^>]*)>; rel=\"next\"");
+
     @Autowired
     private UserRepository userRepository;
 
@@ -82,6 +97,12 @@ public class UserResourceIntTest {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     @Autowired
     private UserMapper userMapper;
 
@@ -104,7 +125,8 @@ public class UserResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        UserResource userResource = new UserResource(userRepository, mailService, userService);
+        UserResource userResource = new UserResource(userRepository, mailService, userService, userImportService,
+            jacksonMessageConverter.getObjectMapper());
         this.restUserMockMvc = MockMvcBuilders.standaloneSetup(userResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -283,6 +305,79 @@ public class UserResourceIntTest {
         assertThat(userList).hasSize(databaseSizeBeforeCreate);
     }
 
+    @Test
+    @Transactional
+    public void importUsersFromNdjson() throws Exception {
+        int databaseSizeBeforeImport = userRepository.findAll().size();
+
+        String rows = "{\"login\":\"" + DEFAULT_LOGIN + "\",\"password\":\"" + DEFAULT_PASSWORD + "\",\"email\":\"" + DEFAULT_EMAIL + "\",\"authorities\":[\"ROLE_USER\"]}\n" +
+            "{\"login\":\"admin\",\"email\":\"other@localhost\"}\n" +
+            "{\"login\":\"" + UPDATED_LOGIN + "\",\"email\":\"" + DEFAULT_EMAIL + "\"}\n" +
+            "\n" +
+            "{\"login\":\n" +
+            "{\"login\":\"" + UPDATED_LOGIN + "\",\"email\":\"not-an-email\"}\n";
+
+        String report = restUserMockMvc.perform(post("/api/users/import")
+            .contentType(UserResource.APPLICATION_NDJSON_VALUE)
+            .content(rows))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(UserResource.APPLICATION_NDJSON_VALUE))
+            .andReturn().getResponse().getContentAsString();
+
+        List<Map<String, Object>> results = readResults(report);
+        assertThat(results).extracting("line").containsExactly(1, 2, 3, 5, 6);
+        assertThat(results).extracting("status").containsExactly("CREATED", "FAILED", "FAILED", "FAILED", "FAILED");
+        assertThat(results).extracting("error").containsExactly(null, "userexists", "emailexists", "parse", "invalid");
+        assertThat(results.get(0).get("login")).isEqualTo(DEFAULT_LOGIN);
+
+        List<User> userList = userRepository.findAll();
+        assertThat(userList).hasSize(databaseSizeBeforeImport + 1);
+        User testUser = userRepository.findOneWithAuthoritiesByLogin(DEFAULT_LOGIN).get();
+        assertThat(testUser.getEmail()).isEqualTo(DEFAULT_EMAIL);
+        assertThat(testUser.getActivated()).isTrue();
+        assertThat(testUser.getResetKey()).isNull();
+        assertThat(passwordEncoder.matches(DEFAULT_PASSWORD, testUser.getPassword())).isTrue();
+        assertThat(testUser.getAuthorities()).extracting("name").containsExactly(AuthoritiesConstants.USER);
+    }
+
+    @Test
+    @Transactional
+    public void importUsersFromCsv() throws Exception {
+        int databaseSizeBeforeImport = userRepository.findAll().size();
+
+        String rows = "login,email,firstName,lastName,authorities\n" +
+            DEFAULT_LOGIN + "," + DEFAULT_EMAIL + ",\"" + DEFAULT_FIRSTNAME + ", \"\"jr\"\"\"," + DEFAULT_LASTNAME + ",ROLE_USER|ROLE_ADMIN\n" +
+            UPDATED_LOGIN + "," + UPDATED_EMAIL + ",,,ROLE_UNKNOWN\n" +
+            UPDATED_LOGIN + "," + UPDATED_EMAIL + ",\"unterminated\n";
+
+        String report = restUserMockMvc.perform(post("/api/users/import")
+            .contentType(UserResource.TEXT_CSV_VALUE)
+            .content(rows))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+
+        List<Map<String, Object>> results = readResults(report);
+        assertThat(results).extracting("line").containsExactly(2, 3, 4);
+        assertThat(results).extracting("error").containsExactly(null, "invalid", "parse");
+
+        List<User> userList = userRepository.findAll();
+        assertThat(userList).hasSize(databaseSizeBeforeImport + 1);
+        User testUser = userRepository.findOneWithAuthoritiesByLogin(DEFAULT_LOGIN).get();
+        assertThat(testUser.getFirstName()).isEqualTo(DEFAULT_FIRSTNAME + ", \"jr\"");
+        assertThat(testUser.getLastName()).isEqualTo(DEFAULT_LASTNAME);
+        assertThat(testUser.getResetKey()).isNotNull();
+        assertThat(testUser.getAuthorities()).extracting("name")
+            .containsExactlyInAnyOrder(AuthoritiesConstants.USER, AuthoritiesConstants.ADMIN);
+    }
+
+    private List<Map<String, Object>> readResults(String report) throws IOException {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String line : report.split("\n")) {
+            results.add(jacksonMessageConverter.getObjectMapper().readValue(line, new TypeReference<Map<String, Object>>() {}));
+        }
+        return results;
+    }
+
     @Test
     @Transactional
     public void getAllUsers() throws Exception {
@@ -302,6 +397,51 @@ public class UserResourceIntTest {
             .andExpect(jsonPath("$.[*].langKey").value(hasItem(DEFAULT_LANGKEY)));
     }
 
+    @Test
+    @Transactional
+    public void getUsersAfterCursor() throws Exception {
+        // Get the first page, in id order
+        String link = restUserMockMvc.perform(get("/api/users?cursor=&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].login").value(contains("system", "admin")))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+        Matcher next = NEXT_LINK.matcher(link);
+        assertThat(next.find()).isTrue();
+
+        // Get the last page
+        restUserMockMvc.perform(get(next.group(1)).param("count", "true"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].login").value(contains("user")))
+            .andExpect(header().string("X-Total-Count", "3"))
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))));
+    }
+
+    @Test
+    @Transactional
+    public void getUsersAfterCursorByLogin() throws Exception {
+        // Get the first page, in login order
+        String link = restUserMockMvc.perform(get("/api/users?cursor=&size=2&sort=login,asc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].login").value(contains("admin", "system")))
+            .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+        Matcher next = NEXT_LINK.matcher(link);
+        assertThat(next.find()).isTrue();
+
+        // Get the last page, in the order of the cursor
+        restUserMockMvc.perform(get(next.group(1)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].login").value(contains("user")));
+    }
+
+    @Test
+    @Transactional
+    public void getUsersAfterInvalidCursor() throws Exception {
+        restUserMockMvc.perform(get("/api/users").param("cursor", "!!!"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value(ErrorConstants.ERR_INVALID_CURSOR));
+    }
+
     @Test
     @Transactional
     public void getUser() throws Exception {
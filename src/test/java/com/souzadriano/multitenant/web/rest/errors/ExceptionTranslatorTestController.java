@@ -5,6 +5,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.*;
 
+import com.souzadriano.multitenant.security.PasswordEncoderBusyException;
+
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.util.HashMap;
@@ -45,6 +47,11 @@ public class ExceptionTranslatorTestController {
         throw new TestResponseStatusException();
     }
 
+    @GetMapping("/test/password-encoder-busy")
+    public void passwordEncoderBusy() {
+        throw new PasswordEncoderBusyException(2);
+    }
+
     @GetMapping("/test/internal-server-error")
     public void internalServerError() {
         throw new RuntimeException();
@@ -0,0 +1,55 @@
+package com.souzadriano.multitenant.benchmark;
+
+import com.souzadriano.multitenant.config.ApplicationProperties;
+import com.souzadriano.multitenant.repository.AuthorityRepository;
+import com.souzadriano.multitenant.security.AuthoritiesConstants;
+import com.souzadriano.multitenant.security.GrantedAuthorityRegistry;
+import com.souzadriano.multitenant.security.UserDetails;
+import com.souzadriano.multitenant.security.jwt.TokenProvider;
+import io.github.jhipster.config.JHipsterProperties;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Objects shared by the benchmarks, built the way the application builds them.
+ */
+final class BenchmarkSupport {
+
+    static final String TENANT_ID = "tenant-1";
+
+    private BenchmarkSupport() {
+    }
+
+    static GrantedAuthorityRegistry grantedAuthorityRegistry() {
+        GrantedAuthorityRegistry grantedAuthorityRegistry = new GrantedAuthorityRegistry(Mockito.mock(AuthorityRepository.class));
+        grantedAuthorityRegistry.get(AuthoritiesConstants.ADMIN);
+        grantedAuthorityRegistry.get(AuthoritiesConstants.USER);
+        return grantedAuthorityRegistry;
+    }
+
+    static TokenProvider tokenProvider() {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setSecret("benchmark-secret-0123456789abcdef");
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setTokenValidityInSeconds(3600);
+        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(), grantedAuthorityRegistry());
+        tokenProvider.init();
+        return tokenProvider;
+    }
+
+    /**
+     * An authenticated admin of {@link #TENANT_ID}, as produced by the UserDetailsService at login.
+     */
+    static Authentication authentication() {
+        List<GrantedAuthority> authorities = Arrays.asList(
+            new SimpleGrantedAuthority(AuthoritiesConstants.ADMIN),
+            new SimpleGrantedAuthority(AuthoritiesConstants.USER));
+        UserDetails principal = new UserDetails("admin", "", authorities, TENANT_ID);
+        return new UsernamePasswordAuthenticationToken(principal, "", authorities);
+    }
+}
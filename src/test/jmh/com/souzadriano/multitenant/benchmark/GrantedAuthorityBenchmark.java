@@ -0,0 +1,55 @@
+package com.souzadriano.multitenant.benchmark;
+
+import com.souzadriano.multitenant.security.AuthoritiesConstants;
+import com.souzadriano.multitenant.security.GrantedAuthorityRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the authorities built from the JWT claim by the GrantedAuthorityRegistry with the previous
+ * split-and-allocate approach, the gc profiler shows the allocation per call of each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrantedAuthorityBenchmark {
+
+    private static final String CLAIM = AuthoritiesConstants.ADMIN + "," + AuthoritiesConstants.USER;
+
+    private GrantedAuthorityRegistry grantedAuthorityRegistry;
+
+    @Setup
+    public void setup() {
+        grantedAuthorityRegistry = BenchmarkSupport.grantedAuthorityRegistry();
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> registry() {
+        return grantedAuthorityRegistry.getAll(CLAIM);
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> splitAndAllocate() {
+        return Arrays.stream(CLAIM.split(","))
+            .map(SimpleGrantedAuthority::new)
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,61 @@
+package com.souzadriano.multitenant.benchmark;
+
+import com.souzadriano.multitenant.security.jwt.JWTConfigurer;
+import com.souzadriano.multitenant.security.jwt.JWTFilter;
+import com.souzadriano.multitenant.security.jwt.TokenProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the JWTFilter for a request with a valid token, with mocked servlet objects and an empty chain.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JWTFilterBenchmark {
+
+    private JWTFilter jwtFilter;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    private FilterChain filterChain;
+
+    @Setup
+    public void setup() {
+        TokenProvider tokenProvider = BenchmarkSupport.tokenProvider();
+        jwtFilter = new JWTFilter(tokenProvider);
+        request = new MockHttpServletRequest("GET", "/api/users");
+        request.addHeader(JWTConfigurer.AUTHORIZATION_HEADER,
+            "Bearer " + tokenProvider.createToken(BenchmarkSupport.authentication(), false));
+        response = new MockHttpServletResponse();
+        filterChain = (servletRequest, servletResponse) -> { };
+    }
+
+    @Benchmark
+    public void doFilter() throws Exception {
+        try {
+            jwtFilter.doFilter(request, response, filterChain);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
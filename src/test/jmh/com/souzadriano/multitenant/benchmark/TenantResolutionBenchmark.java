@@ -0,0 +1,74 @@
+package com.souzadriano.multitenant.benchmark;
+
+import com.souzadriano.multitenant.config.multitenant.CurrentTenantIdentifierResolverImpl;
+import com.souzadriano.multitenant.config.multitenant.TenantContextHolder;
+import com.souzadriano.multitenant.security.AuthoritiesConstants;
+import com.souzadriano.multitenant.security.SecurityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the lookups done several times per request, once the JWTFilter has set up the thread: the tenant
+ * resolution of Hibernate and the SecurityUtils helpers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TenantResolutionBenchmark {
+
+    private CurrentTenantIdentifierResolverImpl tenantIdentifierResolver;
+
+    @Setup
+    public void setup() {
+        tenantIdentifierResolver = new CurrentTenantIdentifierResolverImpl();
+        SecurityContextHolder.getContext().setAuthentication(BenchmarkSupport.authentication());
+        TenantContextHolder.setTenantId(BenchmarkSupport.TENANT_ID);
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        TenantContextHolder.clear();
+    }
+
+    @Benchmark
+    public String resolveCurrentTenantIdentifier() {
+        return tenantIdentifierResolver.resolveCurrentTenantIdentifier();
+    }
+
+    @Benchmark
+    public UserDetails getCurrentUserDetail() {
+        return SecurityUtils.getCurrentUserDetail();
+    }
+
+    @Benchmark
+    public String getCurrentUserLogin() {
+        return SecurityUtils.getCurrentUserLogin();
+    }
+
+    @Benchmark
+    public boolean isAuthenticated() {
+        return SecurityUtils.isAuthenticated();
+    }
+
+    @Benchmark
+    public boolean isCurrentUserInRole() {
+        return SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN);
+    }
+}